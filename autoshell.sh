@@ -0,0 +1,24 @@
+#!/bin/bash
+# YunFx AutoShell headless runner - runs script groups without JavaFX or a display
+#
+# Usage: ./autoshell.sh run --group backup [--parallel 4] [--json] [--force] [--log]
+#        ./autoshell.sh list [--json]
+
+SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+CLASSES_DIR="$SCRIPT_DIR/target/classes"
+CLASSPATH_FILE="$SCRIPT_DIR/target/classpath.txt"
+
+if [ ! -d "$CLASSES_DIR" ]; then
+    echo "❌ Application is not built. Run: mvn compile" >&2
+    exit 5
+fi
+
+# Resolve the dependency classpath once and reuse it on later runs
+if [ ! -f "$CLASSPATH_FILE" ]; then
+    mvn -q -f "$SCRIPT_DIR/pom.xml" dependency:build-classpath -Dmdep.outputFile="$CLASSPATH_FILE" >&2 || exit 5
+fi
+
+# C1-only compilation keeps startup short for a process that mostly waits on scripts
+exec java -XX:TieredStopAtLevel=1 -Xshare:auto $JAVA_OPTS \
+    -cp "$CLASSES_DIR:$(cat "$CLASSPATH_FILE")" \
+    com.yunfx.autoshell.cli.AutoShellCli "$@"
@@ -2,6 +2,7 @@ package com.yunfx.autoshell;
 
 import javafx.application.Application;
 import javafx.stage.Stage;
+import com.yunfx.autoshell.service.PersistenceService;
 import com.yunfx.autoshell.ui.MainController;
 
 public class Main extends Application {
@@ -11,6 +12,12 @@ public class Main extends Application {
         controller.initialize(primaryStage);
     }
 
+    @Override
+    public void stop() {
+        // Write changes that are still queued before the JVM exits
+        PersistenceService.getInstance().shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
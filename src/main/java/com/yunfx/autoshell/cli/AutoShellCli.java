@@ -0,0 +1,189 @@
+package com.yunfx.autoshell.cli;
+
+import com.yunfx.autoshell.daemon.AutoShellDaemon;
+import com.yunfx.autoshell.daemon.DaemonClient;
+import com.yunfx.autoshell.database.DatabaseManager;
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.model.ScriptGroup;
+import com.yunfx.autoshell.model.ScriptRun;
+import com.yunfx.autoshell.service.ScriptAnalysisService;
+import com.yunfx.autoshell.service.ScriptExecutionService;
+import com.yunfx.autoshell.service.ScriptExecutionService.ExecutionResult;
+import com.yunfx.autoshell.service.SudoPasswordManager;
+
+import java.io.Console;
+import java.io.PrintStream;
+
+/**
+ * Headless entry point that runs script groups without starting JavaFX.
+ * Commands are forwarded to a running daemon when one is available.
+ * <pre>
+ * autoshell run --group backup [--parallel 4] [--json] [--force] [--log] [--resume] [--no-daemon]
+ * autoshell list [--json]
+ * autoshell history [--group backup] [--limit 20] [--json]
+ * autoshell attach &lt;runId&gt; [--json]
+ * autoshell daemon | ping | shutdown
+ * </pre>
+ */
+public class AutoShellCli {
+    private final PrintStream out;
+    private boolean json;
+
+    public AutoShellCli(PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        // Results own stdout; diagnostics printed by the services go to stderr
+        PrintStream out = System.out;
+        System.setOut(System.err);
+        System.exit(new AutoShellCli(out).run(args));
+    }
+
+    public int run(String[] args) {
+        CommandLineOptions options;
+        try {
+            options = CommandLineOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            return GroupRunner.EXIT_USAGE;
+        }
+        json = options.isJson();
+
+        try {
+            switch (options.getCommand()) {
+                case "run":
+                    if (options.getGroup() == null) {
+                        System.err.println("run requires --group <name>");
+                        return GroupRunner.EXIT_USAGE;
+                    }
+                    if (!options.isNoDaemon() && DaemonClient.isAvailable()) {
+                        return DaemonClient.send(args, out);
+                    }
+                    return runGroup(options);
+                case "list":
+                    return listGroups();
+                case "history":
+                    if (DaemonClient.isAvailable()) {
+                        return DaemonClient.send(args, out);
+                    }
+                    return showHistory(options);
+                case "attach":
+                    if (options.getArgument() == null) {
+                        System.err.println("attach requires a run id");
+                        return GroupRunner.EXIT_USAGE;
+                    }
+                    if (!DaemonClient.isAvailable()) {
+                        System.err.println("No AutoShell daemon is running");
+                        return GroupRunner.EXIT_NOT_FOUND;
+                    }
+                    return DaemonClient.send(args, out);
+                case "daemon":
+                    return startDaemon();
+                case "ping":
+                case "shutdown":
+                    if (!DaemonClient.isAvailable()) {
+                        System.err.println("No AutoShell daemon is running");
+                        return GroupRunner.EXIT_NOT_FOUND;
+                    }
+                    return DaemonClient.send(args, out);
+                case "help":
+                case "--help":
+                case "-h":
+                    printUsage();
+                    return GroupRunner.EXIT_OK;
+                default:
+                    System.err.println("Unknown command: " + options.getCommand());
+                    printUsage();
+                    return GroupRunner.EXIT_USAGE;
+            }
+        } catch (Exception e) {
+            emit(RunEvent.error(e.getMessage()));
+            return GroupRunner.EXIT_ERROR;
+        }
+    }
+
+    private int runGroup(CommandLineOptions options) throws Exception {
+        Console console = System.console();
+        if (console != null) {
+            SudoPasswordManager.getInstance().setPasswordPrompt(new ConsolePasswordPrompt(console));
+        }
+
+        GroupRunner runner = new GroupRunner(new ScriptExecutionService(), new ScriptAnalysisService());
+        return runner.run(options.getGroup(), options.getParallel(), options.isForce(), options.isLog(),
+            options.isResume(), new GroupRunner.Listener() {
+                @Override
+                public void onStart(ScriptGroup group, int scriptCount, int parallel, long estimatedMs) {
+                    emit(RunEvent.start(group, scriptCount, parallel, estimatedMs));
+                }
+
+                @Override
+                public void onScriptFinished(Script script, ExecutionResult result) {
+                    emit(RunEvent.script(script, result));
+                }
+
+                @Override
+                public void onSummary(ScriptGroup group, int succeeded, int failed, int skipped, long durationMs) {
+                    emit(RunEvent.summary(group, succeeded, failed, skipped, durationMs));
+                }
+
+                @Override
+                public void onError(String message) {
+                    emit(RunEvent.error(message));
+                }
+            });
+    }
+
+    private int listGroups() throws Exception {
+        for (ScriptGroup group : DatabaseManager.getInstance().getAllGroups()) {
+            out.println(json
+                ? new JsonLine("group").put("name", group.getName()).put("scripts", group.getScripts().size()).toString()
+                : group.getName() + " (" + group.getScripts().size() + " scripts)");
+        }
+        return GroupRunner.EXIT_OK;
+    }
+
+    private int showHistory(CommandLineOptions options) throws Exception {
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        Long groupId = null;
+        if (options.getGroup() != null) {
+            ScriptGroup group = dbManager.getGroupByName(options.getGroup());
+            if (group == null) {
+                emit(RunEvent.error("Group not found: " + options.getGroup()));
+                return GroupRunner.EXIT_NOT_FOUND;
+            }
+            groupId = group.getId();
+        }
+        for (ScriptRun run : dbManager.getRecentRuns(groupId, options.getLimit())) {
+            emit(RunEvent.history(run));
+        }
+        return GroupRunner.EXIT_OK;
+    }
+
+    private int startDaemon() throws Exception {
+        // Never prompt: the daemon usually runs as a background job, where reading the terminal
+        // stops it. Runs that need sudo use "sudo -n" and fail if that needs a password.
+        SudoPasswordManager.getInstance().setPasswordPrompt(null);
+        new AutoShellDaemon(DaemonClient.socketPath()).serve();
+        return GroupRunner.EXIT_OK;
+    }
+
+    private synchronized void emit(RunEvent event) {
+        out.println(event.render(json));
+        out.flush();
+    }
+
+    private void printUsage() {
+        System.err.println("Usage:");
+        System.err.println("  autoshell run --group <name> [--parallel N] [--json] [--force] [--log] [--resume]");
+        System.err.println("                [--no-daemon]");
+        System.err.println("  autoshell list [--json]");
+        System.err.println("  autoshell history [--group <name>] [--limit N] [--json]");
+        System.err.println("  autoshell attach <runId> [--json]");
+        System.err.println("  autoshell daemon | ping | shutdown");
+        System.err.println();
+        System.err.println("Exit codes: 0 success, 1 script failed, 2 usage, 3 not found,");
+        System.err.println("            4 sudo password denied, 5 internal error, 6 pre-flight check failed");
+    }
+}
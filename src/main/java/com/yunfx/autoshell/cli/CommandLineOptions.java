@@ -0,0 +1,99 @@
+package com.yunfx.autoshell.cli;
+
+/**
+ * Parsed arguments of the headless runner. The daemon parses requests with the
+ * same rules, so a request line is just the command line split on tabs.
+ */
+public class CommandLineOptions {
+    private String command;
+    private String argument;
+    private String group;
+    private int parallel = 1;
+    private int limit = 20;
+    private boolean json;
+    private boolean force;
+    private boolean log;
+    private boolean resume;
+    private boolean noDaemon;
+
+    public String getCommand() { return command; }
+    public String getArgument() { return argument; }
+    public String getGroup() { return group; }
+    public int getParallel() { return parallel; }
+    public int getLimit() { return limit; }
+    public boolean isJson() { return json; }
+    public boolean isForce() { return force; }
+    public boolean isLog() { return log; }
+    public boolean isResume() { return resume; }
+    public boolean isNoDaemon() { return noDaemon; }
+
+    /**
+     * Parses a command followed by its options
+     * @param args The arguments, starting with the command name
+     * @return The parsed options
+     * @throws IllegalArgumentException if the arguments are invalid
+     */
+    public static CommandLineOptions parse(String[] args) {
+        CommandLineOptions options = new CommandLineOptions();
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Missing command");
+        }
+        options.command = args[0];
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--group":
+                case "-g":
+                    options.group = requireValue(args, ++i, "--group");
+                    break;
+                case "--parallel":
+                case "-p":
+                    options.parallel = requirePositive(args, ++i, "--parallel");
+                    break;
+                case "--limit":
+                    options.limit = requirePositive(args, ++i, "--limit");
+                    break;
+                case "--json":
+                    options.json = true;
+                    break;
+                case "--force":
+                    options.force = true;
+                    break;
+                case "--log":
+                    options.log = true;
+                    break;
+                case "--resume":
+                    options.resume = true;
+                    break;
+                case "--no-daemon":
+                    options.noDaemon = true;
+                    break;
+                default:
+                    if (args[i].startsWith("-") || options.argument != null) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    options.argument = args[i];
+            }
+        }
+        return options;
+    }
+
+    private static String requireValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " requires a value");
+        }
+        return args[index];
+    }
+
+    private static int requirePositive(String[] args, int index, String option) {
+        int value;
+        try {
+            value = Integer.parseInt(requireValue(args, index, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number");
+        }
+        if (value < 1) {
+            throw new IllegalArgumentException(option + " must be at least 1");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,25 @@
+package com.yunfx.autoshell.cli;
+
+import com.yunfx.autoshell.service.PasswordPrompt;
+
+import java.io.Console;
+
+/**
+ * Asks for the sudo password on the controlling terminal, without echo
+ */
+public class ConsolePasswordPrompt implements PasswordPrompt {
+    private final Console console;
+
+    public ConsolePasswordPrompt(Console console) {
+        this.console = console;
+    }
+
+    @Override
+    public String requestPassword(String reason, String previousError) {
+        if (previousError != null) {
+            console.printf("%s%n", previousError);
+        }
+        char[] password = console.readPassword("[sudo] %s%nPassword: ", reason);
+        return password != null ? new String(password) : null;
+    }
+}
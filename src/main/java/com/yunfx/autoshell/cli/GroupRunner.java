@@ -0,0 +1,215 @@
+package com.yunfx.autoshell.cli;
+
+import com.yunfx.autoshell.database.DatabaseManager;
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.model.ResourceLimits;
+import com.yunfx.autoshell.model.ScriptGroup;
+import com.yunfx.autoshell.service.ExecutionPlanner;
+import com.yunfx.autoshell.service.GroupRunCheckpoint;
+import com.yunfx.autoshell.service.PipelineExecutionService;
+import com.yunfx.autoshell.service.PreflightService;
+import com.yunfx.autoshell.service.ResourceLimiter;
+import com.yunfx.autoshell.service.ScriptAnalysisService;
+import com.yunfx.autoshell.service.ScriptExecutionService;
+import com.yunfx.autoshell.service.ScriptExecutionService.ExecutionResult;
+import com.yunfx.autoshell.service.SudoPasswordManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a script group without any UI and reports progress to a listener.
+ * Shared by the command line runner and the daemon.
+ */
+public class GroupRunner {
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_SCRIPT_FAILED = 1;
+    public static final int EXIT_USAGE = 2;
+    public static final int EXIT_NOT_FOUND = 3;
+    public static final int EXIT_SUDO_DENIED = 4;
+    public static final int EXIT_ERROR = 5;
+    public static final int EXIT_PREFLIGHT_FAILED = 6;
+
+    /**
+     * Receives the events of a group run. Callbacks for individual scripts may
+     * arrive concurrently from worker threads.
+     */
+    public interface Listener {
+        void onStart(ScriptGroup group, int scriptCount, int parallel, long estimatedMs);
+        void onScriptFinished(Script script, ExecutionResult result);
+        void onSummary(ScriptGroup group, int succeeded, int failed, int skipped, long durationMs);
+        void onError(String message);
+    }
+
+    private final ScriptExecutionService executionService;
+    private final ScriptAnalysisService analysisService;
+
+    public GroupRunner(ScriptExecutionService executionService, ScriptAnalysisService analysisService) {
+        this.executionService = executionService;
+        this.analysisService = analysisService;
+    }
+
+    /**
+     * Runs every script of a group
+     * @param groupName Name of the group to run
+     * @param parallel Maximum number of scripts running at once
+     * @param forceRun Re-run scripts whose declared inputs are unchanged
+     * @param logToFile Write script output to log files instead of capturing it
+     * @param resume Continue the group's last failed or interrupted run at its first unsuccessful step
+     * @param listener Receives progress events
+     * @return Process exit code describing the outcome
+     */
+    public int run(String groupName, int parallel, boolean forceRun, boolean logToFile, boolean resume,
+                   Listener listener) throws Exception {
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        ScriptGroup group = dbManager.getGroupByName(groupName);
+        if (group == null) {
+            listener.onError("Group not found: " + groupName);
+            return EXIT_NOT_FOUND;
+        }
+
+        List<Script> scripts = dbManager.getScriptsByGroup(group.getId());
+
+        ScriptAnalysisService.AnalysisResult analysis = analysisService.analyzeScripts(scripts);
+        if (analysis.hasSudoScripts() && !obtainSudoPassword(group, analysis)) {
+            listener.onError(SudoPasswordManager.getInstance().hasPasswordPrompt()
+                ? "Sudo password is required for some scripts in this group."
+                : "sudo credentials required: " + analysis.getSudoRequired() + " scripts in this group need sudo, which " +
+                  "cannot ask for a password here. Run 'sudo -v' first or allow these commands without a password.");
+            return EXIT_SUDO_DENIED;
+        }
+
+        // Fail before anything runs if a script has a syntax error
+        PreflightService.PreflightResult preflight = new PreflightService().check(scripts);
+        if (!preflight.isPassed()) {
+            for (PreflightService.Issue issue : preflight.getIssues()) {
+                listener.onError("Pre-flight check failed for " + issue.getScript().getName() + ": " + issue.getMessage());
+            }
+            return EXIT_PREFLIGHT_FAILED;
+        }
+
+        ResourceLimits groupLimits = ResourceLimiter.getInstance().groupLimits(group.getId());
+        if (group.isPipeline()) {
+            return runPipeline(group, scripts, groupLimits, listener);
+        }
+
+        GroupRunCheckpoint checkpoint = GroupRunCheckpoint.begin(group, scripts, resume);
+        if (checkpoint.getCompletedCount() > 0) {
+            System.err.println("Resuming after " + checkpoint.getCompletedCount() + " completed scripts");
+        }
+
+        // Parallel runs start the longest scripts first so none of them is left to run alone at the end
+        ExecutionPlanner.Plan plan = new ExecutionPlanner().plan(scripts);
+        List<Script> pending = new ArrayList<>();
+        for (Script script : scripts) {
+            if (!checkpoint.isCompleted(script)) {
+                pending.add(script);
+            }
+        }
+        List<Script> startOrder = parallel > 1 ? plan.longestFirst(scripts) : scripts;
+        listener.onStart(group, scripts.size(), parallel,
+            plan.estimateMakespan(parallel > 1 ? plan.longestFirst(pending) : pending, parallel, false));
+
+        long startTime = System.currentTimeMillis();
+        int succeeded = 0;
+        int failed = 0;
+        int skipped = 0;
+
+        // Keeps sudo authenticated until the last privileged script has run
+        SudoPasswordManager.KeepAlive keepAlive = analysis.hasSudoScripts()
+            ? SudoPasswordManager.getInstance().keepAlive()
+            : null;
+        ExecutorService executor = Executors.newFixedThreadPool(parallel);
+        try {
+            CompletionService<ExecutionResult> completionService = new ExecutorCompletionService<>(executor);
+            for (Script script : startOrder) {
+                completionService.submit(() -> {
+                    if (checkpoint.isCompleted(script)) {
+                        ExecutionResult result = ExecutionResult.skipped("Skipped: succeeded in the resumed run");
+                        listener.onScriptFinished(script, result);
+                        return result;
+                    }
+                    checkpoint.stepStarted(script);
+                    ExecutionResult result = executionService.executeIfChanged(script, forceRun, logToFile, groupLimits);
+                    checkpoint.stepFinished(script, result);
+                    listener.onScriptFinished(script, result);
+                    return result;
+                });
+            }
+
+            for (int i = 0; i < scripts.size(); i++) {
+                ExecutionResult result = completionService.take().get();
+                if (result.isSkipped()) {
+                    skipped++;
+                } else if (result.isSuccess()) {
+                    succeeded++;
+                } else {
+                    failed++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            if (keepAlive != null) {
+                keepAlive.close();
+            }
+        }
+        // Only a run that got through every step is finished; an aborted one stays running and resumable
+        checkpoint.finish();
+
+        listener.onSummary(group, succeeded, failed, skipped, System.currentTimeMillis() - startTime);
+        return failed > 0 ? EXIT_SCRIPT_FAILED : EXIT_OK;
+    }
+
+    /**
+     * Runs a pipeline group; its stages always run together, so parallelism and skipping do not apply
+     */
+    private int runPipeline(ScriptGroup group, List<Script> scripts, ResourceLimits groupLimits, Listener listener) {
+        // Stages run concurrently, so the slowest one bounds the pipeline
+        ExecutionPlanner.Plan plan = new ExecutionPlanner().plan(scripts);
+        listener.onStart(group, scripts.size(), scripts.size(), plan.estimateMakespan(scripts, scripts.size(), false));
+
+        PipelineExecutionService.PipelineResult result =
+            new PipelineExecutionService().executePipeline(group.getName(), scripts, groupLimits);
+        if (result.getError() != null) {
+            listener.onError(result.getError());
+        }
+
+        int succeeded = 0;
+        int failed = 0;
+        for (int i = 0; i < result.getStageResults().size(); i++) {
+            ExecutionResult stageResult = result.getStageResults().get(i);
+            listener.onScriptFinished(scripts.get(i), stageResult);
+            if (stageResult.isSuccess()) {
+                succeeded++;
+            } else {
+                failed++;
+            }
+        }
+        if (result.getOutputLog() != null) {
+            System.err.println("Pipeline output: " + result.getOutputLog());
+        }
+
+        listener.onSummary(group, succeeded, failed, 0, result.getExecutionTimeMs());
+        if (result.getError() != null && result.getStageResults().isEmpty()) {
+            return EXIT_ERROR;
+        }
+        return result.isSuccess() ? EXIT_OK : EXIT_SCRIPT_FAILED;
+    }
+
+    private boolean obtainSudoPassword(ScriptGroup group, ScriptAnalysisService.AnalysisResult analysis) {
+        SudoPasswordManager sudoManager = SudoPasswordManager.getInstance();
+        if (sudoManager.hasValidPassword()) {
+            return true;
+        }
+        if (!sudoManager.hasPasswordPrompt()) {
+            // Unattended (cron/CI, the daemon): sudo must work without a password
+            return sudoManager.canSudoWithoutPassword();
+        }
+        return sudoManager.requestSudoPassword("Group '" + group.getName() + "' contains " +
+            analysis.getSudoRequired() + " scripts that require sudo privileges");
+    }
+}
@@ -0,0 +1,64 @@
+package com.yunfx.autoshell.cli;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds one flat JSON object per line for machine-readable output
+ */
+public class JsonLine {
+    private final Map<String, Object> fields = new LinkedHashMap<>();
+
+    public JsonLine(String event) {
+        fields.put("event", event);
+    }
+
+    public JsonLine put(String key, Object value) {
+        fields.put(key, value);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder json = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendString(json, field.getKey());
+            json.append(':');
+            Object value = field.getValue();
+            if (value == null) {
+                json.append("null");
+            } else if (value instanceof Number || value instanceof Boolean) {
+                json.append(value);
+            } else {
+                appendString(json, value.toString());
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,132 @@
+package com.yunfx.autoshell.cli;
+
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.model.ScriptGroup;
+import com.yunfx.autoshell.model.ScriptRun;
+import com.yunfx.autoshell.service.ExecutionPlanner;
+import com.yunfx.autoshell.service.ScriptExecutionService.ExecutionResult;
+
+/**
+ * One progress event of a group run, rendered both as a JSON line and as human-readable text
+ */
+public class RunEvent {
+    public static final String DONE = "done";
+
+    private final String type;
+    private final String json;
+    private final String text;
+
+    private RunEvent(JsonLine json, String type, String text) {
+        this.type = type;
+        this.json = json.toString();
+        this.text = text;
+    }
+
+    public String getType() { return type; }
+    public String getJson() { return json; }
+    public String getText() { return text; }
+
+    public String render(boolean asJson) {
+        return asJson ? json : text;
+    }
+
+    public static RunEvent start(ScriptGroup group, int scriptCount, int parallel, long estimatedMs) {
+        return new RunEvent(new JsonLine("start")
+                .put("group", group.getName())
+                .put("scripts", scriptCount)
+                .put("parallel", parallel)
+                .put("estimatedMs", estimatedMs),
+            "start",
+            "Running group " + group.getName() + " (" + scriptCount + " scripts, parallel " + parallel +
+                ", about " + ExecutionPlanner.formatDuration(estimatedMs) + ")");
+    }
+
+    public static RunEvent script(Script script, ExecutionResult result) {
+        JsonLine line = new JsonLine("script")
+            .put("name", script.getName())
+            .put("path", script.getFilePath().toString())
+            .put("success", result.isSuccess())
+            .put("skipped", result.isSkipped())
+            .put("exitCode", result.getExitCode())
+            .put("durationMs", result.getExecutionTimeMs());
+        if (result.getLogFile() != null) {
+            line.put("log", result.getLogFile().toString());
+        }
+        if (!result.isSuccess()) {
+            line.put("error", result.getError());
+        }
+        if (result.getLimitViolation() != null) {
+            line.put("limitViolation", result.getLimitViolation());
+        }
+
+        String text;
+        if (result.isSkipped()) {
+            text = "[SKIP] " + script.getName() + " (" + result.getOutput().replaceFirst("^Skipped: ", "") + ")";
+        } else if (result.isSuccess()) {
+            text = "[ OK ] " + script.getName() + " (" + result.getExecutionTimeMs() + " ms)";
+        } else {
+            text = "[FAIL] " + script.getName() + " (exit " + result.getExitCode() + ")\n" + result.getError().stripTrailing();
+        }
+        return new RunEvent(line, "script", text);
+    }
+
+    public static RunEvent summary(ScriptGroup group, int succeeded, int failed, int skipped, long durationMs) {
+        return new RunEvent(new JsonLine("summary")
+                .put("group", group.getName())
+                .put("succeeded", succeeded)
+                .put("failed", failed)
+                .put("skipped", skipped)
+                .put("durationMs", durationMs),
+            "summary",
+            String.format("Finished %s: %d succeeded, %d failed, %d skipped in %d ms",
+                group.getName(), succeeded, failed, skipped, durationMs));
+    }
+
+    public static RunEvent error(String message) {
+        return new RunEvent(new JsonLine("error").put("message", message), "error", "Error: " + message);
+    }
+
+    public static RunEvent history(ScriptRun run) {
+        JsonLine line = new JsonLine("run")
+            .put("id", run.getId())
+            .put("path", run.getScriptPath())
+            .put("startedAt", run.getStartedAt().toString())
+            .put("durationMs", run.getDurationMs())
+            .put("exitCode", run.getExitCode())
+            .put("success", run.isSuccess());
+        String text = String.format("%s  %-4s %6d ms  exit %-3d %s", run.getStartedAt(), run.isSuccess() ? "OK" : "FAIL",
+            run.getDurationMs(), run.getExitCode(), run.getScriptPath());
+        if (run.getLimitViolation() != null) {
+            line.put("limitViolation", run.getLimitViolation());
+            text += "  (" + run.getLimitViolation() + ")";
+        }
+        return new RunEvent(line, "run", text);
+    }
+
+    public static RunEvent accepted(long runId) {
+        return new RunEvent(new JsonLine("accepted").put("runId", runId), "accepted", "Submitted run " + runId);
+    }
+
+    /**
+     * Final event of a run; the exit code lets remote clients exit like a local run would
+     */
+    public static RunEvent done(int exitCode) {
+        return new RunEvent(new JsonLine(DONE).put("exitCode", exitCode), DONE, "");
+    }
+
+    /**
+     * Extracts the exit code from the JSON form of a {@link #done(int)} event
+     * @return The exit code, or -1 if the line is not a done event
+     */
+    public static int parseDoneExitCode(String jsonLine) {
+        String prefix = "{\"event\":\"" + DONE + "\",\"exitCode\":";
+        if (!jsonLine.startsWith(prefix) || !jsonLine.endsWith("}")) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(jsonLine.substring(prefix.length(), jsonLine.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
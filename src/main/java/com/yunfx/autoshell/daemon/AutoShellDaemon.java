@@ -0,0 +1,368 @@
+package com.yunfx.autoshell.daemon;
+
+import com.yunfx.autoshell.cli.CommandLineOptions;
+import com.yunfx.autoshell.cli.GroupRunner;
+import com.yunfx.autoshell.cli.JsonLine;
+import com.yunfx.autoshell.cli.RunEvent;
+import com.yunfx.autoshell.database.DatabaseManager;
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.model.ScriptGroup;
+import com.yunfx.autoshell.model.ScriptRun;
+import com.yunfx.autoshell.service.ScriptAnalysisService;
+import com.yunfx.autoshell.service.ScriptExecutionService;
+import com.yunfx.autoshell.service.ScriptExecutionService.ExecutionResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running AutoShell process that keeps the database, analysis cache and
+ * sudo session warm and accepts requests on a Unix domain socket.
+ * <p>
+ * Protocol: a client sends one request line holding the command line arguments
+ * separated by tabs (for example {@code run\t--group\tbackup\t--json}) and
+ * receives events, one per line, until the daemon closes the connection.
+ * Runs answer with an {@code accepted} event immediately and end with a
+ * {@code done} event carrying the exit code.
+ */
+public class AutoShellDaemon {
+    private static final int MAX_FINISHED_RUNS = 50;
+
+    private final Path socketPath;
+    private final ScriptExecutionService executionService;
+    private final GroupRunner groupRunner;
+    private final ExecutorService connectionExecutor;
+    private final ExecutorService runExecutor;
+    private final Map<Long, DaemonRun> runs = new LinkedHashMap<>();
+    private final AtomicLong nextRunId = new AtomicLong(1);
+    private volatile boolean running;
+    private ServerSocketChannel server;
+    private FileChannel lockChannel;
+
+    public AutoShellDaemon(Path socketPath) {
+        this.socketPath = socketPath;
+        this.executionService = new ScriptExecutionService();
+        this.groupRunner = new GroupRunner(executionService, new ScriptAnalysisService());
+        this.connectionExecutor = Executors.newCachedThreadPool(daemonThreads("autoshell-daemon-client"));
+        this.runExecutor = Executors.newCachedThreadPool(daemonThreads("autoshell-daemon-run"));
+    }
+
+    /**
+     * Binds the socket and serves requests until a shutdown request arrives
+     */
+    public void serve() throws IOException {
+        Files.createDirectories(socketPath.getParent());
+        // One daemon per socket: the lock is held while this daemon runs, and the OS drops it
+        // if the daemon dies, so it also covers two daemons starting at the same time
+        lockChannel = FileChannel.open(socketPath.resolveSibling(socketPath.getFileName() + ".lock"),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (lockChannel.tryLock() == null || DaemonClient.isListening(socketPath)) {
+            lockChannel.close();
+            lockChannel = null;
+            throw new IOException("An AutoShell daemon is already running on " + socketPath);
+        }
+
+        try {
+            // Open the database up front so the first request does not pay for it
+            DatabaseManager.getInstance();
+
+            Files.deleteIfExists(socketPath); // Stale socket from a daemon that died; nothing answers on it
+
+            // Bind inside a private directory and move the socket into place once it is restricted,
+            // so other users can never connect to it
+            Path bindDirectory = Files.createTempDirectory(socketPath.getParent(), ".autoshell-daemon",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            Path boundPath = bindDirectory.resolve("socket");
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                server.bind(UnixDomainSocketAddress.of(boundPath));
+                Files.setPosixFilePermissions(boundPath, PosixFilePermissions.fromString("rw-------"));
+                Files.move(boundPath, socketPath, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(boundPath);
+                Files.delete(bindDirectory);
+            }
+        } catch (IOException | RuntimeException e) {
+            shutdown();
+            throw e;
+        }
+        running = true;
+        System.err.println("AutoShell daemon listening on " + socketPath);
+
+        try {
+            while (running) {
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (IOException e) {
+                    if (running) {
+                        System.err.println("Daemon accept failed: " + e.getMessage());
+                    }
+                    continue;
+                }
+                connectionExecutor.submit(() -> handle(client));
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    public synchronized void shutdown() {
+        running = false;
+        try {
+            if (server != null) {
+                server.close();
+            }
+            // Only the daemon holding the lock owns the socket file
+            if (lockChannel != null) {
+                Files.deleteIfExists(socketPath);
+                lockChannel.close();
+                lockChannel = null;
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to close daemon socket: " + e.getMessage());
+        }
+        connectionExecutor.shutdownNow();
+        runExecutor.shutdownNow();
+    }
+
+    private void handle(SocketChannel client) {
+        ClientConnection connection;
+        try {
+            connection = new ClientConnection(client);
+        } catch (IOException e) {
+            return;
+        }
+
+        try {
+            String request = connection.readRequest();
+            if (request == null || request.isBlank()) {
+                connection.close();
+                return;
+            }
+
+            CommandLineOptions options;
+            try {
+                options = CommandLineOptions.parse(request.split("\t"));
+            } catch (IllegalArgumentException e) {
+                connection.setJson(true);
+                connection.send(RunEvent.error(e.getMessage()));
+                connection.send(RunEvent.done(GroupRunner.EXIT_USAGE));
+                connection.close();
+                return;
+            }
+            connection.setJson(options.isJson());
+
+            switch (options.getCommand()) {
+                case "run":
+                    submitRun(options, connection);
+                    break;
+                case "attach":
+                    attach(options, connection);
+                    break;
+                case "history":
+                    sendHistory(options, connection);
+                    break;
+                case "ping":
+                    connection.sendRaw(new JsonLine("pong").toString());
+                    connection.send(RunEvent.done(GroupRunner.EXIT_OK));
+                    connection.close();
+                    break;
+                case "shutdown":
+                    connection.sendRaw(new JsonLine("shutdown").toString());
+                    connection.send(RunEvent.done(GroupRunner.EXIT_OK));
+                    connection.close();
+                    running = false;
+                    server.close();
+                    break;
+                default:
+                    connection.send(RunEvent.error("Unknown command: " + options.getCommand()));
+                    connection.send(RunEvent.done(GroupRunner.EXIT_USAGE));
+                    connection.close();
+            }
+        } catch (Exception e) {
+            connection.send(RunEvent.error(e.getMessage()));
+            connection.send(RunEvent.done(GroupRunner.EXIT_ERROR));
+            connection.close();
+        }
+    }
+
+    private void submitRun(CommandLineOptions options, ClientConnection connection) {
+        if (options.getGroup() == null) {
+            connection.send(RunEvent.error("run requires --group <name>"));
+            connection.send(RunEvent.done(GroupRunner.EXIT_USAGE));
+            connection.close();
+            return;
+        }
+
+        DaemonRun run = registerRun(options.getGroup());
+        connection.send(RunEvent.accepted(run.getId()));
+        run.subscribe(connection);
+
+        runExecutor.submit(() -> {
+            int exitCode;
+            try {
+                exitCode = groupRunner.run(options.getGroup(), options.getParallel(), options.isForce(), options.isLog(),
+                    options.isResume(), new GroupRunner.Listener() {
+                        @Override
+                        public void onStart(ScriptGroup group, int scriptCount, int parallel, long estimatedMs) {
+                            run.publish(RunEvent.start(group, scriptCount, parallel, estimatedMs));
+                        }
+
+                        @Override
+                        public void onScriptFinished(Script script, ExecutionResult result) {
+                            run.publish(RunEvent.script(script, result));
+                        }
+
+                        @Override
+                        public void onSummary(ScriptGroup group, int succeeded, int failed, int skipped, long durationMs) {
+                            run.publish(RunEvent.summary(group, succeeded, failed, skipped, durationMs));
+                        }
+
+                        @Override
+                        public void onError(String message) {
+                            run.publish(RunEvent.error(message));
+                        }
+                    });
+            } catch (Exception e) {
+                run.publish(RunEvent.error(e.getMessage()));
+                exitCode = GroupRunner.EXIT_ERROR;
+            }
+            run.finish(exitCode);
+        });
+    }
+
+    private void attach(CommandLineOptions options, ClientConnection connection) {
+        DaemonRun run = null;
+        try {
+            long runId = Long.parseLong(options.getArgument());
+            synchronized (runs) {
+                run = runs.get(runId);
+            }
+        } catch (NumberFormatException | NullPointerException e) {
+            // Reported below as an unknown run
+        }
+
+        if (run == null) {
+            connection.send(RunEvent.error("Unknown run: " + options.getArgument()));
+            connection.send(RunEvent.done(GroupRunner.EXIT_NOT_FOUND));
+            connection.close();
+            return;
+        }
+        run.subscribe(connection);
+    }
+
+    private void sendHistory(CommandLineOptions options, ClientConnection connection) throws Exception {
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        Long groupId = null;
+        if (options.getGroup() != null) {
+            ScriptGroup group = dbManager.getGroupByName(options.getGroup());
+            if (group == null) {
+                connection.send(RunEvent.error("Group not found: " + options.getGroup()));
+                connection.send(RunEvent.done(GroupRunner.EXIT_NOT_FOUND));
+                connection.close();
+                return;
+            }
+            groupId = group.getId();
+        }
+        for (ScriptRun run : dbManager.getRecentRuns(groupId, options.getLimit())) {
+            connection.send(RunEvent.history(run));
+        }
+        connection.send(RunEvent.done(GroupRunner.EXIT_OK));
+        connection.close();
+    }
+
+    private DaemonRun registerRun(String groupName) {
+        DaemonRun run = new DaemonRun(nextRunId.getAndIncrement(), groupName);
+        synchronized (runs) {
+            runs.put(run.getId(), run);
+
+            // Forget the oldest finished runs
+            int finishedRuns = (int) runs.values().stream().filter(DaemonRun::isFinished).count();
+            Iterator<DaemonRun> iterator = runs.values().iterator();
+            while (finishedRuns > MAX_FINISHED_RUNS && iterator.hasNext()) {
+                if (iterator.next().isFinished()) {
+                    iterator.remove();
+                    finishedRuns--;
+                }
+            }
+        }
+        return run;
+    }
+
+    private static java.util.concurrent.ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * One client connection; also the subscriber that streams run events to it
+     */
+    private static class ClientConnection implements DaemonRun.Subscriber {
+        private final SocketChannel channel;
+        private final BufferedReader reader;
+        private final PrintWriter writer;
+        private boolean json;
+
+        ClientConnection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            this.writer = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+        }
+
+        String readRequest() throws IOException {
+            return reader.readLine();
+        }
+
+        void setJson(boolean json) {
+            this.json = json;
+        }
+
+        @Override
+        public boolean send(RunEvent event) {
+            // The done event is always JSON so the client can read the exit code
+            return sendRaw(RunEvent.DONE.equals(event.getType()) ? event.getJson() : event.render(json));
+        }
+
+        boolean sendRaw(String line) {
+            synchronized (writer) {
+                writer.println(line);
+                writer.flush();
+                return !writer.checkError();
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Client already gone
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.yunfx.autoshell.daemon;
+
+import com.yunfx.autoshell.cli.GroupRunner;
+import com.yunfx.autoshell.cli.RunEvent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Thin client for {@link AutoShellDaemon}
+ */
+public final class DaemonClient {
+
+    private DaemonClient() {
+    }
+
+    /**
+     * Location of the daemon socket: $XDG_RUNTIME_DIR when set, otherwise the application data directory
+     */
+    public static Path socketPath() {
+        String runtimeDir = System.getenv("XDG_RUNTIME_DIR");
+        if (runtimeDir != null && !runtimeDir.isEmpty()) {
+            return Paths.get(runtimeDir, "yunfx-autoshell.sock");
+        }
+        return Paths.get(System.getProperty("user.home"), ".local", "share", "yunfx-autoshell", "autoshell.sock");
+    }
+
+    /**
+     * Checks whether a daemon is listening on the socket
+     * @return true if a connection could be opened
+     */
+    public static boolean isAvailable() {
+        return isListening(socketPath());
+    }
+
+    /**
+     * Checks whether a daemon is listening on a socket; false when the file is missing
+     * or stale and the connection is refused
+     */
+    static boolean isListening(Path socket) {
+        if (!Files.exists(socket)) {
+            return false;
+        }
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            return channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sends a command to the daemon and prints the events it streams back
+     * @param args The command line arguments, forwarded as one tab-separated request line
+     * @param out Where event lines are printed
+     * @return The exit code reported by the daemon
+     */
+    public static int send(String[] args, PrintStream out) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketPath()));
+            channel.write(ByteBuffer.wrap((String.join("\t", args) + "\n").getBytes(StandardCharsets.UTF_8)));
+
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            int exitCode = GroupRunner.EXIT_ERROR;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int doneExitCode = RunEvent.parseDoneExitCode(line);
+                if (doneExitCode >= 0) {
+                    exitCode = doneExitCode;
+                    continue;
+                }
+                out.println(line);
+                out.flush();
+            }
+            return exitCode;
+        }
+    }
+}
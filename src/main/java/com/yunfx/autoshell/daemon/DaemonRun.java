@@ -0,0 +1,73 @@
+package com.yunfx.autoshell.daemon;
+
+import com.yunfx.autoshell.cli.RunEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A group run submitted to the daemon. Keeps every event so clients that
+ * attach later receive the full run, then streams new events as they happen.
+ */
+class DaemonRun {
+
+    /**
+     * A connected client that receives the events of a run
+     */
+    interface Subscriber {
+        /**
+         * @return false if the client is gone and should be dropped
+         */
+        boolean send(RunEvent event);
+
+        void close();
+    }
+
+    private final long id;
+    private final String groupName;
+    private final List<RunEvent> events = new ArrayList<>();
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private boolean finished;
+
+    DaemonRun(long id, String groupName) {
+        this.id = id;
+        this.groupName = groupName;
+    }
+
+    long getId() { return id; }
+    String getGroupName() { return groupName; }
+
+    synchronized boolean isFinished() {
+        return finished;
+    }
+
+    synchronized void publish(RunEvent event) {
+        events.add(event);
+        subscribers.removeIf(subscriber -> !subscriber.send(event));
+    }
+
+    /**
+     * Replays past events to the subscriber and registers it for future ones.
+     * Subscribers of a finished run are closed right after the replay.
+     */
+    synchronized void subscribe(Subscriber subscriber) {
+        for (RunEvent event : events) {
+            if (!subscriber.send(event)) {
+                subscriber.close();
+                return;
+            }
+        }
+        if (finished) {
+            subscriber.close();
+        } else {
+            subscribers.add(subscriber);
+        }
+    }
+
+    synchronized void finish(int exitCode) {
+        publish(RunEvent.done(exitCode));
+        finished = true;
+        subscribers.forEach(Subscriber::close);
+        subscribers.clear();
+    }
+}
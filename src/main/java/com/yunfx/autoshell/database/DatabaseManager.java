@@ -1,19 +1,75 @@
 package com.yunfx.autoshell.database;
 
+import com.yunfx.autoshell.model.GroupRun;
+import com.yunfx.autoshell.model.ResourceLimits;
 import com.yunfx.autoshell.model.Script;
 import com.yunfx.autoshell.model.ScriptGroup;
+import com.yunfx.autoshell.model.ScriptRun;
+import org.sqlite.SQLiteConfig;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.zip.DataFormatException;
 
 public class DatabaseManager {
-    private static final String DB_URL = "jdbc:sqlite:" + System.getProperty("user.home") + "/.local/share/yunfx-autoshell/autoshell.db";
+    private static final String DB_PATH = System.getProperty("user.home") + "/.local/share/yunfx-autoshell/autoshell.db";
+    private static final int READ_CONNECTIONS = 3;
+    private static final int SNIPPET_TOKENS = 12;
+    // Compaction runs when nothing was written for a whole interval and this share of the file is free
+    private static final long MAINTENANCE_INTERVAL_MINUTES = 10;
+    private static final double COMPACT_FREE_RATIO = 0.1;
+    // Marks matched terms in search snippets
+    public static final char HIGHLIGHT_START = '\u0002';
+    public static final char HIGHLIGHT_END = '\u0003';
+    private static final String INSERT_CONTENT_SQL = "INSERT OR IGNORE INTO script_contents (hash, data) VALUES (?, ?)";
+    private static final String INSERT_FTS_SQL = "INSERT INTO scripts_fts (rowid, name, description, tags, content, signature) VALUES (?, ?, ?, ?, ?, ?)";
+    // Metadata only; bodies live in script_contents and are loaded on demand
+    private static final String SCRIPT_COLUMNS = "s.id, s.name, s.description, s.file_path, s.last_modified, s.executable, s.content_hash";
     private static DatabaseManager instance;
+    // All writes go through this connection and are serialized by synchronized methods
     private Connection connection;
+    private ReadConnectionPool readers;
+    private ScheduledExecutorService maintenance;
+    private final ScriptCatalog catalog = new ScriptCatalog(this);
+    // Catalog updates of the open transaction, applied once it commits
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private long changesAtLastCheck = -1;
+
+    /**
+     * Work done on the writer connection
+     */
+    public interface SqlWork<T> {
+        T run() throws SQLException;
+    }
 
     private DatabaseManager() {
-        initializeDatabase();
+        this(DB_PATH, UnaryOperator.identity());
+    }
+
+    /**
+     * Opens a database other than the user's, e.g. a scratch file in tests
+     * @param dbPath The database file, created if missing
+     * @param readerDecorator Wraps each pooled read connection
+     */
+    DatabaseManager(String dbPath, UnaryOperator<Connection> readerDecorator) {
+        initializeDatabase(dbPath, readerDecorator);
     }
 
     public static synchronized DatabaseManager getInstance() {
@@ -23,10 +79,9 @@ public class DatabaseManager {
         return instance;
     }
 
-    private void initializeDatabase() {
+    private void initializeDatabase(String dbPath, UnaryOperator<Connection> readerDecorator) {
         try {
             // Ensure the database directory exists
-            String dbPath = System.getProperty("user.home") + "/.local/share/yunfx-autoshell/autoshell.db";
             java.io.File dbFile = new java.io.File(dbPath);
             java.io.File dbDir = dbFile.getParentFile();
             if (dbDir != null && !dbDir.exists()) {
@@ -45,22 +100,53 @@ public class DatabaseManager {
             
             // Create connection with proper URL
             String dbUrl = "jdbc:sqlite:" + dbPath;
-            connection = DriverManager.getConnection(dbUrl);
-            
-            // Enable foreign keys
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute("PRAGMA foreign_keys = ON");
-            }
+            SQLiteConfig writerConfig = baseConfig();
+            writerConfig.setJournalMode(SQLiteConfig.JournalMode.WAL);
+            writerConfig.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL); // Durable across crashes in WAL mode
+            writerConfig.enforceForeignKeys(true);
+            connection = writerConfig.createConnection(dbUrl);
             
             createTables();
             
+            // Readers are opened after the schema exists and never block the writer
+            readers = new ReadConnectionPool(READ_CONNECTIONS, () -> {
+                SQLiteConfig readerConfig = baseConfig();
+                readerConfig.setReadOnly(true);
+                return readerDecorator.apply(readerConfig.createConnection(dbUrl));
+            });
+            
+            maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "autoshell-db-maintenance");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            maintenance.scheduleWithFixedDelay(this::compactIfIdle, MAINTENANCE_INTERVAL_MINUTES, MAINTENANCE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+            
             System.out.println("Database initialized successfully at: " + dbPath);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to initialize database: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Settings shared by the writer and the readers
+     */
+    private static SQLiteConfig baseConfig() {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setCacheSize(-16 * 1024); // 16 MB
+        config.setTempStore(SQLiteConfig.TempStore.MEMORY);
+        config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(256L * 1024 * 1024));
+        config.setBusyTimeout(5000);
+        return config;
+    }
+
     private void createTables() throws SQLException {
+        // Takes effect only for a new database; existing ones are converted by compact()
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+        }
+        
         String createGroupsTable = """
             CREATE TABLE IF NOT EXISTS script_groups (
                 id INTEGER PRIMARY KEY AUTOINCREMENT,
@@ -82,6 +168,23 @@ public class DatabaseManager {
             )
         """;
 
+        String createScriptContentsTable = """
+            CREATE TABLE IF NOT EXISTS script_contents (
+                hash TEXT PRIMARY KEY,
+                data BLOB NOT NULL
+            )
+        """;
+
+        // Own copy of the searchable text, since bodies are stored compressed; rowid is scripts.id.
+        // signature identifies the indexed version so unchanged scripts are not indexed again.
+        String createScriptsFtsTable = """
+            CREATE VIRTUAL TABLE IF NOT EXISTS scripts_fts USING fts5 (
+                name, description, tags, content, signature UNINDEXED,
+                tokenize = 'unicode61 remove_diacritics 2',
+                prefix = '2 3'
+            )
+        """;
+
         String createGroupScriptsTable = """
             CREATE TABLE IF NOT EXISTS group_scripts (
                 group_id INTEGER,
@@ -101,28 +204,222 @@ public class DatabaseManager {
             )
         """;
 
+        String createScriptRunsTable = """
+            CREATE TABLE IF NOT EXISTS script_runs (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                script_path TEXT NOT NULL,
+                started_at TEXT NOT NULL,
+                duration_ms INTEGER NOT NULL,
+                exit_code INTEGER NOT NULL,
+                success BOOLEAN NOT NULL,
+                input_hash TEXT
+            )
+        """;
+
+        String createGroupRunsTable = """
+            CREATE TABLE IF NOT EXISTS group_runs (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                group_id INTEGER NOT NULL,
+                started_at TEXT NOT NULL,
+                finished_at TEXT,
+                status TEXT NOT NULL,
+                FOREIGN KEY (group_id) REFERENCES script_groups(id) ON DELETE CASCADE
+            )
+        """;
+
+        String createGroupRunStepsTable = """
+            CREATE TABLE IF NOT EXISTS group_run_steps (
+                run_id INTEGER NOT NULL,
+                position INTEGER NOT NULL,
+                script_path TEXT NOT NULL,
+                status TEXT NOT NULL,
+                exit_code INTEGER,
+                updated_at TEXT NOT NULL,
+                PRIMARY KEY (run_id, script_path),
+                FOREIGN KEY (run_id) REFERENCES group_runs(id) ON DELETE CASCADE
+            )
+        """;
+
+        String createPreflightCacheTable = """
+            CREATE TABLE IF NOT EXISTS preflight_cache (
+                cache_key TEXT PRIMARY KEY,
+                message TEXT,
+                checked_at TEXT NOT NULL
+            )
+        """;
+
+        String createResourceLimitsTable = """
+            CREATE TABLE IF NOT EXISTS resource_limits (
+                scope TEXT NOT NULL,
+                scope_key TEXT NOT NULL,
+                cpu_seconds INTEGER,
+                address_space_mb INTEGER,
+                open_files INTEGER,
+                nice_level INTEGER,
+                io_class TEXT,
+                memory_mb INTEGER,
+                cpu_quota_percent INTEGER,
+                PRIMARY KEY (scope, scope_key)
+            )
+        """;
+
         try (Statement stmt = connection.createStatement()) {
             System.out.println("Creating script_groups table...");
             stmt.execute(createGroupsTable);
             System.out.println("Creating scripts table...");
             stmt.execute(createScriptsTable);
+            System.out.println("Creating script_contents table...");
+            stmt.execute(createScriptContentsTable);
+            System.out.println("Creating scripts_fts table...");
+            stmt.execute(createScriptsFtsTable);
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS scripts_fts_delete AFTER DELETE ON scripts BEGIN DELETE FROM scripts_fts WHERE rowid = old.id; END");
             System.out.println("Creating group_scripts table...");
             stmt.execute(createGroupScriptsTable);
             System.out.println("Creating script_tags table...");
             stmt.execute(createScriptTagsTable);
-            System.out.println("All tables created successfully!");
+            System.out.println("Creating script_runs table...");
+            stmt.execute(createScriptRunsTable);
+            System.out.println("Creating group_runs tables...");
+            stmt.execute(createGroupRunsTable);
+            stmt.execute(createGroupRunStepsTable);
+            System.out.println("Creating preflight_cache table...");
+            stmt.execute(createPreflightCacheTable);
+            System.out.println("Creating resource_limits table...");
+            stmt.execute(createResourceLimitsTable);
+        }
+        
+        // Later changes to the tables above are migrations, so existing databases receive them too
+        int version = schemaMigrations().migrate(connection);
+        System.out.println("All tables created successfully! Schema version " + version);
+    }
+
+    /**
+     * The schema's history. Append new migrations with the next version number;
+     * never change or reorder the ones already released.
+     */
+    private SchemaMigrator schemaMigrations() {
+        return new SchemaMigrator()
+            .add(1, "Columns and indexes added before schema versioning", connection -> {
+                // Databases from before versioning may already have some of these
+                ensureColumn("script_groups", "group_type", "TEXT NOT NULL DEFAULT 'STANDARD'");
+                ensureColumn("group_scripts", "position", "INTEGER");
+                ensureColumn("script_runs", "limit_violation", "TEXT");
+                ensureColumn("scripts", "content_hash", "TEXT");
+                try (Statement stmt = connection.createStatement()) {
+                    // Tag filters look scripts up by tag, ignoring case
+                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_script_tags_tag ON script_tags (tag COLLATE NOCASE, script_id)");
+                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_scripts_content_hash ON scripts (content_hash)");
+                }
+            })
+            .add(2, "Move inline script bodies into the content store", connection -> migrateInlineContent())
+            .add(3, "Index existing scripts for full-text search", connection -> indexUnindexedScripts())
+            .add(4, "Indexes for memberships, name ordering and run history", connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                    // Members in stage order, and the groups of a script (cascades, tag loading)
+                    stmt.execute("CREATE INDEX idx_group_scripts_position ON group_scripts (group_id, position, script_id)");
+                    stmt.execute("CREATE INDEX idx_group_scripts_script ON group_scripts (script_id, group_id)");
+                    stmt.execute("CREATE INDEX idx_scripts_name ON scripts (name)");
+                    // Latest successful runs of a script, newest first through the implicit rowid
+                    stmt.execute("CREATE INDEX idx_script_runs_path ON script_runs (script_path, success)");
+                    stmt.execute("CREATE INDEX idx_group_runs_group ON group_runs (group_id)");
+                }
+            })
+            .add(5, "File keys for detecting moved scripts", connection ->
+                ensureColumn("scripts", "file_key", "TEXT"));
+    }
+
+    private void ensureColumn(String table, String column, String definition) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        try (Statement stmt = connection.createStatement()) {
+            System.out.println("Adding column " + table + "." + column + "...");
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    /**
+     * Moves bodies stored inline by earlier versions into the content store
+     */
+    private void migrateInlineContent() throws SQLException {
+        String selectSql = "SELECT id, content FROM scripts WHERE content IS NOT NULL";
+        String updateSql = "UPDATE scripts SET content = NULL, content_hash = ? WHERE id = ?";
+        try (PreparedStatement select = connection.prepareStatement(selectSql);
+             PreparedStatement insertContent = connection.prepareStatement(INSERT_CONTENT_SQL);
+             PreparedStatement update = connection.prepareStatement(updateSql);
+             ResultSet rs = select.executeQuery()) {
+            int migrated = 0;
+            while (rs.next()) {
+                String content = rs.getString("content");
+                String hash = ContentCodec.hash(content);
+                insertContent.setString(1, hash);
+                insertContent.setBytes(2, ContentCodec.compress(content));
+                insertContent.addBatch();
+                update.setString(1, hash);
+                update.setLong(2, rs.getLong("id"));
+                update.addBatch();
+                migrated++;
+            }
+            if (migrated > 0) {
+                System.out.println("Moving " + migrated + " script bodies into the content store...");
+                insertContent.executeBatch();
+                update.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Adds scripts stored before the search index existed to the index
+     */
+    private void indexUnindexedScripts() throws SQLException {
+        String selectSql = """
+            SELECT s.id, s.name, s.description, s.content_hash, c.data,
+                   (SELECT group_concat(tag, char(31)) FROM script_tags WHERE script_id = s.id) AS tags
+            FROM scripts s
+            LEFT JOIN script_contents c ON c.hash = s.content_hash
+            WHERE s.id NOT IN (SELECT rowid FROM scripts_fts)
+        """;
+        try (PreparedStatement select = connection.prepareStatement(selectSql);
+             PreparedStatement insert = connection.prepareStatement(INSERT_FTS_SQL);
+             ResultSet rs = select.executeQuery()) {
+            int indexed = 0;
+            while (rs.next()) {
+                String tags = rs.getString("tags");
+                List<String> tagList = tags == null ? List.of() : List.of(tags.split("\u001f"));
+                byte[] data = rs.getBytes("data");
+                String content;
+                try {
+                    content = data == null ? null : ContentCodec.decompress(data);
+                } catch (DataFormatException e) {
+                    content = null;
+                }
+                bindSearchRow(insert, rs.getLong("id"), rs.getString("name"), rs.getString("description"),
+                    tagList, content, rs.getString("content_hash"));
+                insert.addBatch();
+                indexed++;
+            }
+            if (indexed > 0) {
+                System.out.println("Indexing " + indexed + " scripts for search...");
+                insert.executeBatch();
+            }
         }
     }
 
     // Script Group Operations
-    public void saveGroup(ScriptGroup group) throws SQLException {
+    public synchronized void saveGroup(ScriptGroup group) throws SQLException {
         if (group.getId() == null) {
             // Insert new group
-            String sql = "INSERT INTO script_groups (name, description, created_at) VALUES (?, ?, ?)";
+            String sql = "INSERT INTO script_groups (name, description, created_at, group_type) VALUES (?, ?, ?, ?)";
             try (PreparedStatement stmt = connection.prepareStatement(sql)) {
                 stmt.setString(1, group.getName());
                 stmt.setString(2, group.getDescription());
                 stmt.setString(3, group.getCreatedAt().toString());
+                stmt.setString(4, group.getType().name());
                 
                 stmt.executeUpdate();
                 
@@ -136,119 +433,678 @@ public class DatabaseManager {
             }
         } else {
             // Update existing group
-            String sql = "UPDATE script_groups SET name = ?, description = ?, created_at = ? WHERE id = ?";
+            String sql = "UPDATE script_groups SET name = ?, description = ?, created_at = ?, group_type = ? WHERE id = ?";
             try (PreparedStatement stmt = connection.prepareStatement(sql)) {
                 stmt.setString(1, group.getName());
                 stmt.setString(2, group.getDescription());
                 stmt.setString(3, group.getCreatedAt().toString());
-                stmt.setLong(4, group.getId());
+                stmt.setString(4, group.getType().name());
+                stmt.setLong(5, group.getId());
                 
                 stmt.executeUpdate();
             }
         }
     }
 
+    /**
+     * Loads all groups with their scripts in three queries: groups, memberships and tags.
+     * A script in several groups is a single shared object.
+     */
     public List<ScriptGroup> getAllGroups() throws SQLException {
-        List<ScriptGroup> groups = new ArrayList<>();
-        String sql = "SELECT * FROM script_groups ORDER BY name";
-        
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+        Connection connection = readers.acquire();
+        try {
+            Map<Long, ScriptGroup> groupsById = new LinkedHashMap<>();
+            String sql = "SELECT * FROM script_groups ORDER BY name";
             
-            while (rs.next()) {
-                ScriptGroup group = new ScriptGroup();
-                group.setId(rs.getLong("id"));
-                group.setName(rs.getString("name"));
-                group.setDescription(rs.getString("description"));
-                group.setCreatedAt(LocalDateTime.parse(rs.getString("created_at")));
+            try (PreparedStatement stmt = connection.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
                 
-                // Load associated scripts
-                loadGroupScripts(group);
-                groups.add(group);
+                while (rs.next()) {
+                    ScriptGroup group = new ScriptGroup();
+                    group.setId(rs.getLong("id"));
+                    group.setName(rs.getString("name"));
+                    group.setDescription(rs.getString("description"));
+                    group.setCreatedAt(LocalDateTime.parse(rs.getString("created_at")));
+                    group.setType(ScriptGroup.Type.valueOf(rs.getString("group_type")));
+                    groupsById.put(group.getId(), group);
+                }
             }
+            
+            // Load associated scripts
+            Map<Long, Script> scriptsById = new HashMap<>();
+            String membersSql = """
+                SELECT gs.group_id, %s FROM group_scripts gs
+                JOIN scripts s ON s.id = gs.script_id
+                ORDER BY gs.group_id, gs.position, s.name
+            """.formatted(SCRIPT_COLUMNS);
+            try (PreparedStatement stmt = connection.prepareStatement(membersSql);
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ScriptGroup group = groupsById.get(rs.getLong("group_id"));
+                    Script script = scriptsById.get(rs.getLong("id"));
+                    if (script == null) {
+                        script = readScript(rs);
+                        scriptsById.put(rs.getLong("id"), script);
+                    }
+                    if (group != null) {
+                        group.addScript(script);
+                    }
+                }
+            }
+            
+            loadTags(connection, scriptsById, "SELECT script_id, tag FROM script_tags WHERE script_id IN (SELECT script_id FROM group_scripts)");
+            return new ArrayList<>(groupsById.values());
+        } finally {
+            readers.release(connection);
         }
-        return groups;
     }
 
-    public void deleteGroup(Long groupId) throws SQLException {
+    public ScriptGroup getGroupByName(String name) throws SQLException {
+        Connection connection = readers.acquire();
+        try {
+            String sql = "SELECT * FROM script_groups WHERE name = ?";
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, name);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    ScriptGroup group = new ScriptGroup();
+                    group.setId(rs.getLong("id"));
+                    group.setName(rs.getString("name"));
+                    group.setDescription(rs.getString("description"));
+                    group.setCreatedAt(LocalDateTime.parse(rs.getString("created_at")));
+                    group.setType(ScriptGroup.Type.valueOf(rs.getString("group_type")));
+                    return group;
+                }
+            }
+        } finally {
+            readers.release(connection);
+        }
+    }
+
+    public synchronized void deleteGroup(Long groupId) throws SQLException {
         String sql = "DELETE FROM script_groups WHERE id = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, groupId);
             stmt.executeUpdate();
         }
+        afterCommit(() -> catalog.groupRemoved(groupId));
+    }
+
+    /**
+     * @return The in-memory view of the stored scripts and memberships, for reads that must not hit the database
+     */
+    public ScriptCatalog getCatalog() {
+        return catalog;
     }
 
     // Script Operations
     public void saveScript(Script script) throws SQLException {
-        // Check if script already exists
-        String checkSql = "SELECT id FROM scripts WHERE file_path = ?";
-        Long existingId = null;
-        try (PreparedStatement checkStmt = connection.prepareStatement(checkSql)) {
-            checkStmt.setString(1, script.getFilePath().toString());
-            try (ResultSet rs = checkStmt.executeQuery()) {
-                if (rs.next()) {
-                    existingId = rs.getLong("id");
+        saveScripts(List.of(script));
+    }
+
+    /**
+     * Inserts or updates scripts, matched by file path, and replaces their tags, all in one
+     * transaction with reused batched statements. Bodies go to the content store, once per
+     * distinct content; bodies no script refers to any more are removed.
+     * @param scripts The scripts to store
+     */
+    public synchronized void saveScripts(Collection<Script> scripts) throws SQLException {
+        if (scripts.isEmpty()) {
+            return;
+        }
+        inTransaction(() -> {
+            List<Script> written = writeScripts(scripts);
+            afterCommit(() -> catalog.scriptsSaved(written));
+            return null;
+        });
+    }
+
+    /**
+     * What a directory scan changed besides adding and updating scripts
+     */
+    public static class ReconcileResult {
+        private final Map<String, String> movedPaths;
+        private final List<String> removedPaths;
+
+        ReconcileResult(Map<String, String> movedPaths, List<String> removedPaths) {
+            this.movedPaths = movedPaths;
+            this.removedPaths = removedPaths;
+        }
+
+        /**
+         * @return Scripts found under a new path; they kept their groups, tags, history and limits
+         */
+        public int getMoved() { return movedPaths.size(); }
+
+        /**
+         * @return Scripts that no longer exist; they were deleted along with their group memberships
+         */
+        public int getRemoved() { return removedPaths.size(); }
+    }
+
+    /**
+     * Stores the result of scanning a directory: scripts stored under the directory that
+     * the scan did not find and whose files are gone are either matched to a newly found
+     * path, when the file was moved, or deleted. A move is recognized by the file key (a
+     * rename keeps the inode) or by identical content. Everything happens in one transaction.
+     * @param root The scanned directory
+     * @param scripts Every script found under it
+     */
+    public synchronized ReconcileResult syncScripts(Path root, Collection<Script> scripts) throws SQLException {
+        return inTransaction(() -> {
+            ReconcileResult result = reconcile(root, scripts);
+            List<Script> written = List.of();
+            if (!scripts.isEmpty()) {
+                written = writeScripts(scripts);
+            } else {
+                deleteUnusedContent();
+            }
+            List<Script> saved = written;
+            afterCommit(() -> {
+                result.movedPaths.forEach(catalog::scriptMoved);
+                catalog.scriptsRemoved(result.removedPaths);
+                catalog.scriptsSaved(saved);
+            });
+            return result;
+        });
+    }
+
+    /**
+     * A script row as far as reconciliation needs it
+     */
+    private static class StoredScript {
+        private final long id;
+        private final String path;
+        private final String fileKey;
+        private final String contentHash;
+
+        StoredScript(long id, String path, String fileKey, String contentHash) {
+            this.id = id;
+            this.path = path;
+            this.fileKey = fileKey;
+            this.contentHash = contentHash;
+        }
+    }
+
+    private ReconcileResult reconcile(Path root, Collection<Script> scripts) throws SQLException {
+        Map<String, Script> found = new HashMap<>();
+        scripts.forEach(script -> found.put(script.getFilePath().toString(), script));
+
+        // Paths under the root sort between "root/" and "root0", so the file_path index answers this
+        String prefix = root.toString().endsWith("/") ? root.toString() : root + "/";
+        List<StoredScript> vanished = new ArrayList<>();
+        Set<String> storedPaths = new HashSet<>();
+        String sql = "SELECT id, file_path, file_key, content_hash FROM scripts WHERE file_path > ? AND file_path < ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, prefix);
+            stmt.setString(2, prefix.substring(0, prefix.length() - 1) + (char) ('/' + 1));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String path = rs.getString("file_path");
+                    storedPaths.add(path);
+                    // A file the scan skipped, e.g. because its attributes could not be read, is kept
+                    if (!found.containsKey(path) && Files.notExists(Paths.get(path))) {
+                        vanished.add(new StoredScript(rs.getLong("id"), path, rs.getString("file_key"), rs.getString("content_hash")));
+                    }
                 }
             }
         }
-        
-        if (existingId != null) {
-            // Update existing script
-            String sql = "UPDATE scripts SET name = ?, description = ?, last_modified = ?, executable = ?, content = ? WHERE id = ?";
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-                stmt.setString(1, script.getName());
-                stmt.setString(2, script.getDescription());
-                stmt.setString(3, script.getLastModified() != null ? script.getLastModified().toString() : null);
-                stmt.setBoolean(4, script.isExecutable());
-                stmt.setString(5, script.getContent());
-                stmt.setLong(6, existingId);
-                
-                stmt.executeUpdate();
+        if (vanished.isEmpty()) {
+            return new ReconcileResult(Map.of(), List.of());
+        }
+
+        Map<String, StoredScript> vanishedByKey = new HashMap<>();
+        Map<String, List<StoredScript>> vanishedByHash = new HashMap<>();
+        for (StoredScript stored : vanished) {
+            if (stored.fileKey != null) {
+                vanishedByKey.put(stored.fileKey, stored);
             }
-        } else {
-            // Insert new script
-            String sql = "INSERT INTO scripts (name, description, file_path, last_modified, executable, content) VALUES (?, ?, ?, ?, ?, ?)";
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            if (stored.contentHash != null) {
+                vanishedByHash.computeIfAbsent(stored.contentHash, hash -> new ArrayList<>()).add(stored);
+            }
+        }
+
+        Map<StoredScript, String> moves = new LinkedHashMap<>();
+        for (Script script : scripts) {
+            String path = script.getFilePath().toString();
+            if (storedPaths.contains(path)) {
+                continue;
+            }
+            String contentHash = script.getContent() == null ? null : ContentCodec.hash(script.getContent());
+            StoredScript match = vanishedByKey.get(script.getFileKey());
+            // Inodes are reused, so the same inode alone is not enough
+            if (match != null && !Objects.equals(match.contentHash, contentHash)
+                    && !Paths.get(match.path).getFileName().equals(script.getFilePath().getFileName())) {
+                match = null;
+            }
+            if (match == null && contentHash != null) {
+                List<StoredScript> sameContent = vanishedByHash.getOrDefault(contentHash, List.of());
+                List<StoredScript> candidates = new ArrayList<>(sameContent);
+                candidates.removeIf(moves::containsKey);
+                // Several identical scripts vanished; there is no telling which one moved
+                match = candidates.size() == 1 ? candidates.get(0) : null;
+            }
+            if (match != null && !moves.containsKey(match)) {
+                moves.put(match, path);
+            }
+        }
+
+        String[] renameSql = {
+            "UPDATE scripts SET file_path = ? WHERE file_path = ?",
+            "UPDATE script_runs SET script_path = ? WHERE script_path = ?",
+            "UPDATE group_run_steps SET script_path = ? WHERE script_path = ?",
+            "UPDATE resource_limits SET scope_key = ? WHERE scope_key = ? AND scope = '" + ResourceLimits.SCOPE_SCRIPT + "'"
+        };
+        for (String rename : renameSql) {
+            try (PreparedStatement stmt = connection.prepareStatement(rename)) {
+                for (Map.Entry<StoredScript, String> move : moves.entrySet()) {
+                    stmt.setString(1, move.getValue());
+                    stmt.setString(2, move.getKey().path);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+
+        // Set-based deletes: removing search rows one by one through the trigger is several times slower.
+        // Memberships and tags cascade.
+        List<String> removedPaths = new ArrayList<>();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS vanished_scripts (id INTEGER PRIMARY KEY)");
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO vanished_scripts (id) VALUES (?)")) {
+                for (StoredScript stored : vanished) {
+                    if (!moves.containsKey(stored)) {
+                        insert.setLong(1, stored.id);
+                        insert.addBatch();
+                        removedPaths.add(stored.path);
+                    }
+                }
+                insert.executeBatch();
+            }
+            stmt.executeUpdate("DELETE FROM scripts_fts WHERE rowid IN (SELECT id FROM vanished_scripts)");
+            stmt.executeUpdate("DELETE FROM scripts WHERE id IN (SELECT id FROM vanished_scripts)");
+            stmt.executeUpdate("DELETE FROM vanished_scripts");
+        }
+        if (!moves.isEmpty() || !removedPaths.isEmpty()) {
+            System.out.println("Reconciled " + prefix + ": " + moves.size() + " moved, " + removedPaths.size() + " removed");
+        }
+        Map<String, String> movedPaths = new LinkedHashMap<>();
+        moves.forEach((stored, newPath) -> movedPaths.put(stored.path, newPath));
+        return new ReconcileResult(movedPaths, removedPaths);
+    }
+
+    /**
+     * @return Metadata-only copies of the written scripts, for the catalog
+     */
+    private List<Script> writeScripts(Collection<Script> scripts) throws SQLException {
+        String sql = """
+            INSERT INTO scripts (name, description, file_path, last_modified, executable, content_hash, file_key)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT(file_path) DO UPDATE SET
+                name = excluded.name,
+                description = excluded.description,
+                last_modified = excluded.last_modified,
+                executable = excluded.executable,
+                content = NULL,
+                content_hash = excluded.content_hash,
+                file_key = COALESCE(excluded.file_key, file_key)
+        """;
+        String deleteTagsSql = "DELETE FROM script_tags WHERE script_id = (SELECT id FROM scripts WHERE file_path = ?)";
+        String insertTagSql = "INSERT OR IGNORE INTO script_tags (script_id, tag) SELECT id, ? FROM scripts WHERE file_path = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             PreparedStatement insertContent = connection.prepareStatement(INSERT_CONTENT_SQL);
+             PreparedStatement contentExists = connection.prepareStatement("SELECT 1 FROM script_contents WHERE hash = ?");
+             PreparedStatement deleteTags = connection.prepareStatement(deleteTagsSql);
+             PreparedStatement insertTag = connection.prepareStatement(insertTagSql)) {
+            Set<String> storedHashes = new HashSet<>();
+            List<String> contentHashes = new ArrayList<>(scripts.size());
+            for (Script script : scripts) {
+                // A script loaded from the database keeps its hash, so its body is not fetched again
+                String contentHash = script.getContentHash();
+                if (contentHash == null && script.getContent() != null) {
+                    contentHash = ContentCodec.hash(script.getContent());
+                    // Most bodies are unchanged between scans; a lookup is cheaper than compressing again
+                    if (storedHashes.add(contentHash) && !exists(contentExists, contentHash)) {
+                        insertContent.setString(1, contentHash);
+                        insertContent.setBytes(2, ContentCodec.compress(script.getContent()));
+                        insertContent.addBatch();
+                    }
+                }
+
                 stmt.setString(1, script.getName());
                 stmt.setString(2, script.getDescription());
                 stmt.setString(3, script.getFilePath().toString());
                 stmt.setString(4, script.getLastModified() != null ? script.getLastModified().toString() : null);
                 stmt.setBoolean(5, script.isExecutable());
-                stmt.setString(6, script.getContent());
-                
-                stmt.executeUpdate();
+                stmt.setString(6, contentHash);
+                stmt.setString(7, script.getFileKey());
+                stmt.addBatch();
+                contentHashes.add(contentHash);
+            }
+            insertContent.executeBatch();
+            stmt.executeBatch();
+            
+            // Tags are replaced after the upsert so new scripts already have ids
+            for (Script script : scripts) {
+                String path = script.getFilePath().toString();
+                deleteTags.setString(1, path);
+                deleteTags.addBatch();
+                for (String tag : script.getTags()) {
+                    insertTag.setString(1, tag);
+                    insertTag.setString(2, path);
+                    insertTag.addBatch();
+                }
+            }
+            deleteTags.executeBatch();
+            insertTag.executeBatch();
+            updateSearchIndex(scripts, contentHashes);
+            deleteUnusedContent();
+            
+            List<Script> written = new ArrayList<>(scripts.size());
+            int i = 0;
+            for (Script script : scripts) {
+                written.add(metadataCopy(script, contentHashes.get(i++)));
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Copies a script without its body, which is loaded from the content store when needed,
+     * so catalog entries stay small
+     */
+    private Script metadataCopy(Script script, String contentHash) {
+        Script copy = new Script(script.getName(), script.getFilePath());
+        copy.setDescription(script.getDescription());
+        copy.setLastModified(script.getLastModified());
+        copy.setExecutable(script.isExecutable());
+        copy.setFileKey(script.getFileKey());
+        copy.setTags(new ArrayList<>(script.getTags()));
+        if (contentHash != null) {
+            copy.setLazyContent(contentHash, () -> loadContent(contentHash));
+        }
+        return copy;
+    }
+
+    private void deleteUnusedContent() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DELETE FROM script_contents WHERE hash NOT IN (SELECT content_hash FROM scripts WHERE content_hash IS NOT NULL)");
+        }
+    }
+
+    private static boolean exists(PreparedStatement query, String key) throws SQLException {
+        query.setString(1, key);
+        try (ResultSet rs = query.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Re-indexes the scripts whose name, description, tags or content changed since they were indexed
+     * @param contentHashes Content hash of each script, in iteration order
+     */
+    private void updateSearchIndex(Collection<Script> scripts, List<String> contentHashes) throws SQLException {
+        String selectSql = "SELECT s.id, f.signature FROM scripts s LEFT JOIN scripts_fts f ON f.rowid = s.id WHERE s.file_path = ?";
+        try (PreparedStatement select = connection.prepareStatement(selectSql);
+             PreparedStatement delete = connection.prepareStatement("DELETE FROM scripts_fts WHERE rowid = ?");
+             PreparedStatement insert = connection.prepareStatement(INSERT_FTS_SQL)) {
+            int i = 0;
+            for (Script script : scripts) {
+                String contentHash = contentHashes.get(i++);
+                select.setString(1, script.getFilePath().toString());
+                try (ResultSet rs = select.executeQuery()) {
+                    if (!rs.next()) {
+                        continue;
+                    }
+                    long id = rs.getLong("id");
+                    String signature = searchSignature(script.getName(), script.getDescription(), script.getTags(), contentHash);
+                    if (signature.equals(rs.getString("signature"))) {
+                        continue;
+                    }
+                    delete.setLong(1, id);
+                    delete.addBatch();
+                    bindSearchRow(insert, id, script.getName(), script.getDescription(), script.getTags(), script.getContent(), contentHash);
+                    insert.addBatch();
+                }
             }
+            delete.executeBatch();
+            insert.executeBatch();
         }
     }
 
+    private static void bindSearchRow(PreparedStatement insert, long id, String name, String description,
+                                      List<String> tags, String content, String contentHash) throws SQLException {
+        insert.setLong(1, id);
+        insert.setString(2, name);
+        insert.setString(3, description);
+        insert.setString(4, String.join(" ", tags));
+        insert.setString(5, content);
+        insert.setString(6, searchSignature(name, description, tags, contentHash));
+    }
+
+    private static String searchSignature(String name, String description, List<String> tags, String contentHash) {
+        List<String> sortedTags = new ArrayList<>(tags);
+        Collections.sort(sortedTags);
+        return ContentCodec.hash(name + '\0' + description + '\0' + String.join("\0", sortedTags) + '\0' + contentHash);
+    }
+
+    /**
+     * A script matching a search, with the best matching fragment
+     */
+    public static class SearchHit {
+        private final Script script;
+        private final String snippet;
+
+        SearchHit(Script script, String snippet) {
+            this.script = script;
+            this.snippet = snippet;
+        }
+
+        public Script getScript() { return script; }
+
+        /**
+         * Matched terms are enclosed in {@link #HIGHLIGHT_START} and {@link #HIGHLIGHT_END}
+         */
+        public String getSnippet() { return snippet; }
+    }
+
+    /**
+     * Searches script names, descriptions, tags and bodies. Words match as prefixes,
+     * "quoted text" as a phrase, and all of them must occur.
+     * @param text The search text as typed by the user
+     * @param limit Maximum number of hits
+     * @return Hits, best first by BM25 with names weighted highest
+     */
+    public List<SearchHit> searchScripts(String text, int limit) throws SQLException {
+        return searchScripts(text, null, List.of(), limit);
+    }
+
+    /**
+     * Searches like {@link #searchScripts(String, int)}, within a group and a tag filter.
+     * Both are applied before the limit, so no match in scope is cut off.
+     * @param groupId Only scripts in this group, or null for all scripts
+     * @param tags Only scripts carrying all of these tags, ignoring case; empty for any
+     */
+    public List<SearchHit> searchScripts(String text, Long groupId, Collection<String> tags, int limit) throws SQLException {
+        String query = toFtsQuery(text);
+        if (query == null) {
+            return new ArrayList<>();
+        }
+        Connection connection = readers.acquire();
+        try {
+            List<SearchHit> hits = new ArrayList<>();
+            Map<Long, Script> scriptsById = new HashMap<>();
+            List<Object> parameters = new ArrayList<>();
+            parameters.add(query);
+            StringBuilder scope = new StringBuilder();
+            if (groupId != null) {
+                scope.append(" AND scripts_fts.rowid IN (SELECT script_id FROM group_scripts WHERE group_id = ?)");
+                parameters.add(groupId);
+            }
+            if (!tags.isEmpty()) {
+                scope.append(" AND scripts_fts.rowid IN (").append(taggedScriptIds(tags.size())).append(")");
+                parameters.addAll(tags);
+                parameters.add(tags.stream().map(String::toLowerCase).distinct().count());
+            }
+            parameters.add(limit);
+            String sql = """
+                SELECT %s, snippet(scripts_fts, -1, char(2), char(3), '…', %d) AS snippet
+                FROM scripts_fts
+                JOIN scripts s ON s.id = scripts_fts.rowid
+                WHERE scripts_fts MATCH ?%s
+                ORDER BY bm25(scripts_fts, 10.0, 5.0, 5.0, 1.0)
+                LIMIT ?
+            """.formatted(SCRIPT_COLUMNS, SNIPPET_TOKENS, scope);
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    stmt.setObject(i + 1, parameters.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Script script = readScript(rs);
+                        scriptsById.put(rs.getLong("id"), script);
+                        hits.add(new SearchHit(script, rs.getString("snippet")));
+                    }
+                }
+            }
+            
+            if (!scriptsById.isEmpty()) {
+                String ids = String.join(", ", Collections.nCopies(scriptsById.size(), "?"));
+                loadTags(connection, scriptsById, "SELECT script_id, tag FROM script_tags WHERE script_id IN (" + ids + ")",
+                    scriptsById.keySet().toArray());
+            }
+            return hits;
+        } finally {
+            readers.release(connection);
+        }
+    }
+
+    /**
+     * Turns user input into an FTS5 query: quoted parts become phrases, other words prefix
+     * terms. Everything is quoted, so FTS5 operators in the input have no effect.
+     * @return The query, or null if the input has no words
+     */
+    private static String toFtsQuery(String text) {
+        List<String> terms = new ArrayList<>();
+        String[] parts = text.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            if (i % 2 == 1 && i < parts.length - 1) {
+                // Between a pair of quotes
+                if (!parts[i].isBlank()) {
+                    terms.add("\"" + parts[i].trim() + "\"");
+                }
+                continue;
+            }
+            for (String word : parts[i].trim().split("\\s+")) {
+                if (!word.isEmpty()) {
+                    terms.add("\"" + word + "\"*");
+                }
+            }
+        }
+        return terms.isEmpty() ? null : String.join(" ", terms);
+    }
+
     public List<Script> getAllScripts() throws SQLException {
-        List<Script> scripts = new ArrayList<>();
-        String sql = "SELECT * FROM scripts ORDER BY name";
-        
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+        Connection connection = readers.acquire();
+        try {
+            List<Script> scripts = new ArrayList<>();
+            Map<Long, Script> scriptsById = new HashMap<>();
+            String sql = "SELECT " + SCRIPT_COLUMNS + " FROM scripts s ORDER BY s.name";
             
-            while (rs.next()) {
-                Script script = new Script();
-                script.setName(rs.getString("name"));
-                script.setDescription(rs.getString("description"));
-                script.setFilePath(java.nio.file.Paths.get(rs.getString("file_path")));
-                if (rs.getString("last_modified") != null) {
-                    script.setLastModified(LocalDateTime.parse(rs.getString("last_modified")));
-                }
-                script.setExecutable(rs.getBoolean("executable"));
-                script.setContent(rs.getString("content"));
+            try (PreparedStatement stmt = connection.prepareStatement(sql);
+                 ResultSet rs = stmt.executeQuery()) {
                 
-                // Load tags
-                loadScriptTags(script);
-                scripts.add(script);
+                while (rs.next()) {
+                    Script script = readScript(rs);
+                    scriptsById.put(rs.getLong("id"), script);
+                    scripts.add(script);
+                }
+            }
+            
+            // Load tags
+            loadTags(connection, scriptsById, "SELECT script_id, tag FROM script_tags");
+            return scripts;
+        } finally {
+            readers.release(connection);
+        }
+    }
+
+    /**
+     * Finds the scripts that carry all of the given tags, through the tag index
+     * @param tags Tags to match, ignoring case
+     * @return Matching scripts ordered by name; all scripts if no tags are given
+     */
+    public List<Script> findScriptsByTags(Collection<String> tags) throws SQLException {
+        if (tags.isEmpty()) {
+            return getAllScripts();
+        }
+        Connection connection = readers.acquire();
+        try {
+            List<Script> scripts = new ArrayList<>();
+            Map<Long, Script> scriptsById = new HashMap<>();
+            String matchingIds = taggedScriptIds(tags.size());
+            String sql = "SELECT " + SCRIPT_COLUMNS + " FROM scripts s WHERE s.id IN (" + matchingIds + ") ORDER BY s.name";
+            
+            List<Object> parameters = new ArrayList<>(tags);
+            parameters.add(tags.stream().map(String::toLowerCase).distinct().count());
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    stmt.setObject(i + 1, parameters.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Script script = readScript(rs);
+                        scriptsById.put(rs.getLong("id"), script);
+                        scripts.add(script);
+                    }
+                }
             }
+            
+            loadTags(connection, scriptsById,
+                "SELECT script_id, tag FROM script_tags WHERE script_id IN (" + matchingIds + ")", parameters.toArray());
+            return scripts;
+        } finally {
+            readers.release(connection);
+        }
+    }
+
+    /**
+     * Selects the ids of scripts carrying all of a number of tags; bind the tags,
+     * then their distinct lower-case count
+     */
+    private static String taggedScriptIds(int tagCount) {
+        String placeholders = String.join(", ", Collections.nCopies(tagCount, "?"));
+        return """
+            SELECT script_id FROM script_tags
+            WHERE tag COLLATE NOCASE IN (%s)
+            GROUP BY script_id
+            HAVING COUNT(DISTINCT lower(tag)) = ?
+        """.formatted(placeholders);
+    }
+
+    /**
+     * @return Every tag in use, ordered alphabetically
+     */
+    public List<String> getAllTags() throws SQLException {
+        Connection connection = readers.acquire();
+        try {
+            List<String> tags = new ArrayList<>();
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT DISTINCT tag FROM script_tags ORDER BY tag COLLATE NOCASE");
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    tags.add(rs.getString("tag"));
+                }
+            }
+            return tags;
+        } finally {
+            readers.release(connection);
         }
-        return scripts;
     }
 
     // Group-Script Association
-    public void addScriptToGroup(Long groupId, String scriptPath) throws SQLException {
+    public synchronized void addScriptToGroup(Long groupId, String scriptPath) throws SQLException {
         // First ensure script exists in database
         Long scriptId = getScriptIdByPath(scriptPath);
         if (scriptId == null) {
@@ -268,15 +1124,21 @@ public class DatabaseManager {
             }
         }
 
-        String sql = "INSERT OR IGNORE INTO group_scripts (group_id, script_id) VALUES (?, ?)";
+        // Members keep the order they were added in, which is the stage order of pipelines
+        String sql = """
+            INSERT OR IGNORE INTO group_scripts (group_id, script_id, position)
+            VALUES (?, ?, (SELECT COALESCE(MAX(position), 0) + 1 FROM group_scripts WHERE group_id = ?))
+        """;
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, groupId);
             stmt.setLong(2, scriptId);
+            stmt.setLong(3, groupId);
             stmt.executeUpdate();
         }
+        afterCommit(() -> catalog.memberAdded(groupId, scriptPath));
     }
 
-    public void removeScriptFromGroup(Long groupId, String scriptPath) throws SQLException {
+    public synchronized void removeScriptFromGroup(Long groupId, String scriptPath) throws SQLException {
         Long scriptId = getScriptIdByPath(scriptPath);
         if (scriptId == null) return;
 
@@ -286,44 +1148,73 @@ public class DatabaseManager {
             stmt.setLong(2, scriptId);
             stmt.executeUpdate();
         }
+        afterCommit(() -> catalog.memberRemoved(groupId, scriptPath));
     }
 
-    private void loadGroupScripts(ScriptGroup group) throws SQLException {
-        String sql = """
-            SELECT s.* FROM scripts s
-            JOIN group_scripts gs ON s.id = gs.script_id
-            WHERE gs.group_id = ?
-            ORDER BY s.name
-        """;
-        
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setLong(1, group.getId());
+    private Script readScript(ResultSet rs) throws SQLException {
+        Script script = new Script();
+        script.setName(rs.getString("name"));
+        script.setDescription(rs.getString("description"));
+        script.setFilePath(java.nio.file.Paths.get(rs.getString("file_path")));
+        if (rs.getString("last_modified") != null) {
+            script.setLastModified(LocalDateTime.parse(rs.getString("last_modified")));
+        }
+        script.setExecutable(rs.getBoolean("executable"));
+        String contentHash = rs.getString("content_hash");
+        if (contentHash != null) {
+            script.setLazyContent(contentHash, () -> loadContent(contentHash));
+        }
+        return script;
+    }
+
+    /**
+     * Fetches a script body from the content store
+     * @param contentHash Hash of the body, see {@link Script#getContentHash()}
+     * @return The body, or null if it is not stored
+     */
+    public String getScriptContent(String contentHash) throws SQLException {
+        Connection connection = readers.acquire();
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT data FROM script_contents WHERE hash = ?")) {
+            stmt.setString(1, contentHash);
             try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Script script = new Script();
-                    script.setName(rs.getString("name"));
-                    script.setDescription(rs.getString("description"));
-                    script.setFilePath(java.nio.file.Paths.get(rs.getString("file_path")));
-                    if (rs.getString("last_modified") != null) {
-                        script.setLastModified(LocalDateTime.parse(rs.getString("last_modified")));
-                    }
-                    script.setExecutable(rs.getBoolean("executable"));
-                    script.setContent(rs.getString("content"));
-                    
-                    loadScriptTags(script);
-                    group.addScript(script);
-                }
+                return rs.next() ? ContentCodec.decompress(rs.getBytes("data")) : null;
             }
+        } catch (DataFormatException e) {
+            throw new SQLException("Corrupt script content " + contentHash, e);
+        } finally {
+            readers.release(connection);
         }
     }
 
-    private void loadScriptTags(Script script) throws SQLException {
-        String sql = "SELECT tag FROM script_tags WHERE script_id = (SELECT id FROM scripts WHERE file_path = ?)";
+    private String loadContent(String contentHash) {
+        try {
+            return getScriptContent(contentHash);
+        } catch (SQLException e) {
+            System.err.println("Failed to load script content: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Attaches tags to already loaded scripts with a single query
+     * @param scriptsById The scripts keyed by database id
+     * @param sql Query selecting script_id and tag
+     * @param parameters Values for the query's placeholders
+     */
+    private void loadTags(Connection connection, Map<Long, Script> scriptsById, String sql, Object... parameters) throws SQLException {
+        if (scriptsById.isEmpty()) {
+            return;
+        }
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, script.getFilePath().toString());
+            for (int i = 0; i < parameters.length; i++) {
+                stmt.setObject(i + 1, parameters[i]);
+            }
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    script.addTag(rs.getString("tag"));
+                    Script script = scriptsById.get(rs.getLong("script_id"));
+                    if (script != null) {
+                        script.addTag(rs.getString("tag"));
+                    }
                 }
             }
         }
@@ -340,53 +1231,596 @@ public class DatabaseManager {
     }
 
     public List<Script> getScriptsByGroup(Long groupId) throws SQLException {
-        List<Script> scripts = new ArrayList<>();
-        String sql = """
-            SELECT s.* FROM scripts s
-            JOIN group_scripts gs ON s.id = gs.script_id
-            WHERE gs.group_id = ?
-            ORDER BY s.name
-        """;
-        
+        Connection connection = readers.acquire();
+        try {
+            List<Script> scripts = new ArrayList<>();
+            Map<Long, Script> scriptsById = new HashMap<>();
+            String sql = """
+                SELECT %s FROM scripts s
+                JOIN group_scripts gs ON s.id = gs.script_id
+                WHERE gs.group_id = ?
+                ORDER BY gs.position, s.name
+            """.formatted(SCRIPT_COLUMNS);
+            
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setLong(1, groupId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Script script = readScript(rs);
+                        scriptsById.put(rs.getLong("id"), script);
+                        scripts.add(script);
+                    }
+                }
+            }
+            
+            loadTags(connection, scriptsById,
+                "SELECT script_id, tag FROM script_tags WHERE script_id IN (SELECT script_id FROM group_scripts WHERE group_id = ?)",
+                groupId);
+            return scripts;
+        } finally {
+            readers.release(connection);
+        }
+    }
+
+    public synchronized void removeGroup(Long groupId) throws SQLException {
+        inTransaction(() -> {
+            // First remove all script associations for this group
+            String deleteGroupScriptsSql = "DELETE FROM group_scripts WHERE group_id = ?";
+            try (PreparedStatement stmt = connection.prepareStatement(deleteGroupScriptsSql)) {
+                stmt.setLong(1, groupId);
+                stmt.executeUpdate();
+            }
+
+            // Drop its run checkpoints
+            String deleteStepsSql = "DELETE FROM group_run_steps WHERE run_id IN (SELECT id FROM group_runs WHERE group_id = ?)";
+            try (PreparedStatement stmt = connection.prepareStatement(deleteStepsSql)) {
+                stmt.setLong(1, groupId);
+                stmt.executeUpdate();
+            }
+            String deleteRunsSql = "DELETE FROM group_runs WHERE group_id = ?";
+            try (PreparedStatement stmt = connection.prepareStatement(deleteRunsSql)) {
+                stmt.setLong(1, groupId);
+                stmt.executeUpdate();
+            }
+
+            // Then remove the group itself
+            String deleteGroupSql = "DELETE FROM script_groups WHERE id = ?";
+            try (PreparedStatement stmt = connection.prepareStatement(deleteGroupSql)) {
+                stmt.setLong(1, groupId);
+                stmt.executeUpdate();
+            }
+            afterCommit(() -> catalog.groupRemoved(groupId));
+            return null;
+        });
+    }
+
+    // Run History
+    public void recordRun(String scriptPath, LocalDateTime startedAt, long durationMs, int exitCode,
+                          boolean success, String inputHash) throws SQLException {
+        recordRun(scriptPath, startedAt, durationMs, exitCode, success, inputHash, null);
+    }
+
+    /**
+     * Records a finished run
+     * @param limitViolation Description of the resource limit the run hit, or null
+     */
+    public synchronized void recordRun(String scriptPath, LocalDateTime startedAt, long durationMs, int exitCode,
+                                       boolean success, String inputHash, String limitViolation) throws SQLException {
+        String sql = "INSERT INTO script_runs (script_path, started_at, duration_ms, exit_code, success, input_hash, limit_violation) VALUES (?, ?, ?, ?, ?, ?, ?)";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setLong(1, groupId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Script script = new Script();
-                    script.setName(rs.getString("name"));
-                    script.setDescription(rs.getString("description"));
-                    script.setFilePath(java.nio.file.Paths.get(rs.getString("file_path")));
-                    if (rs.getString("last_modified") != null) {
-                        script.setLastModified(LocalDateTime.parse(rs.getString("last_modified")));
+            stmt.setString(1, scriptPath);
+            stmt.setString(2, startedAt.toString());
+            stmt.setLong(3, durationMs);
+            stmt.setInt(4, exitCode);
+            stmt.setBoolean(5, success);
+            stmt.setString(6, inputHash);
+            stmt.setString(7, limitViolation);
+            stmt.executeUpdate();
+        }
+    }
+
+    public String getLastSuccessfulInputHash(String scriptPath) throws SQLException {
+        Connection connection = readers.acquire();
+        try {
+            String sql = """
+                SELECT input_hash FROM script_runs
+                WHERE script_path = ? AND success = 1
+                ORDER BY id DESC LIMIT 1
+            """;
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, scriptPath);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? rs.getString("input_hash") : null;
+                }
+            }
+        } finally {
+            readers.release(connection);
+        }
+    }
+
+    /**
+     * Loads the durations of the latest successful runs of several scripts in one query
+     * @param scriptPaths The scripts to look up
+     * @param perScript Maximum number of runs per script
+     * @return Durations in milliseconds keyed by script path, newest first; scripts without history are absent
+     */
+    public Map<String, List<Long>> getRecentDurations(Collection<String> scriptPaths, int perScript) throws SQLException {
+        Connection connection = readers.acquire();
+        try {
+            Map<String, List<Long>> durations = new HashMap<>();
+            if (scriptPaths.isEmpty()) {
+                return durations;
+            }
+
+            String placeholders = String.join(", ", Collections.nCopies(scriptPaths.size(), "?"));
+            String sql = """
+                SELECT script_path, duration_ms FROM (
+                    SELECT script_path, duration_ms,
+                           ROW_NUMBER() OVER (PARTITION BY script_path ORDER BY id DESC) AS recency
+                    FROM script_runs
+                    WHERE success = 1 AND script_path IN (%s)
+                ) WHERE recency <= ?
+                ORDER BY script_path, recency
+            """.formatted(placeholders);
+
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                int index = 1;
+                for (String path : scriptPaths) {
+                    stmt.setString(index++, path);
+                }
+                stmt.setInt(index, perScript);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        durations.computeIfAbsent(rs.getString("script_path"), key -> new ArrayList<>())
+                            .add(rs.getLong("duration_ms"));
                     }
-                    script.setExecutable(rs.getBoolean("executable"));
-                    script.setContent(rs.getString("content"));
-                    
-                    loadScriptTags(script);
-                    scripts.add(script);
                 }
             }
+            return durations;
+        } finally {
+            readers.release(connection);
         }
-        return scripts;
     }
 
-    public void removeGroup(Long groupId) throws SQLException {
-        // First remove all script associations for this group
-        String deleteGroupScriptsSql = "DELETE FROM group_scripts WHERE group_id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(deleteGroupScriptsSql)) {
-            stmt.setLong(1, groupId);
+    public List<ScriptRun> getRecentRuns(Long groupId, int limit) throws SQLException {
+        Connection connection = readers.acquire();
+        try {
+            List<ScriptRun> runs = new ArrayList<>();
+            String sql = groupId == null
+                ? "SELECT * FROM script_runs ORDER BY id DESC LIMIT ?"
+                : """
+                    SELECT r.* FROM script_runs r
+                    JOIN scripts s ON s.file_path = r.script_path
+                    JOIN group_scripts gs ON gs.script_id = s.id
+                    WHERE gs.group_id = ?
+                    ORDER BY r.id DESC LIMIT ?
+                """;
+
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                int index = 1;
+                if (groupId != null) {
+                    stmt.setLong(index++, groupId);
+                }
+                stmt.setInt(index, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        ScriptRun run = new ScriptRun();
+                        run.setId(rs.getLong("id"));
+                        run.setScriptPath(rs.getString("script_path"));
+                        run.setStartedAt(LocalDateTime.parse(rs.getString("started_at")));
+                        run.setDurationMs(rs.getLong("duration_ms"));
+                        run.setExitCode(rs.getInt("exit_code"));
+                        run.setSuccess(rs.getBoolean("success"));
+                        run.setInputHash(rs.getString("input_hash"));
+                        run.setLimitViolation(rs.getString("limit_violation"));
+                        runs.add(run);
+                    }
+                }
+            }
+            return runs;
+        } finally {
+            readers.release(connection);
+        }
+    }
+
+    // Group Run Checkpoints
+
+    /**
+     * Starts a checkpointed group run with every step pending
+     * @param groupId The group being run
+     * @param scriptPaths The steps, in execution order
+     * @return The id of the new run
+     */
+    public synchronized long createGroupRun(Long groupId, List<String> scriptPaths) throws SQLException {
+        String now = LocalDateTime.now().toString();
+        return inTransaction(() -> {
+            long runId;
+            String runSql = "INSERT INTO group_runs (group_id, started_at, status) VALUES (?, ?, ?)";
+            try (PreparedStatement stmt = connection.prepareStatement(runSql)) {
+                stmt.setLong(1, groupId);
+                stmt.setString(2, now);
+                stmt.setString(3, GroupRun.RUNNING);
+                stmt.executeUpdate();
+            }
+            try (Statement idStmt = connection.createStatement();
+                 ResultSet rs = idStmt.executeQuery("SELECT last_insert_rowid()")) {
+                rs.next();
+                runId = rs.getLong(1);
+            }
+            insertPendingSteps(runId, scriptPaths, now);
+            return runId;
+        });
+    }
+
+    /**
+     * Reopens an interrupted run: steps that did not succeed go back to pending
+     * and steps for scripts added to the group since are appended
+     * @param runId The run to resume
+     * @param scriptPaths The group's current steps, in execution order
+     */
+    public synchronized void reopenGroupRun(long runId, List<String> scriptPaths) throws SQLException {
+        String now = LocalDateTime.now().toString();
+        inTransaction(() -> {
+            String resetSql = "UPDATE group_run_steps SET status = ?, exit_code = NULL, updated_at = ? WHERE run_id = ? AND status != ?";
+            try (PreparedStatement stmt = connection.prepareStatement(resetSql)) {
+                stmt.setString(1, GroupRun.PENDING);
+                stmt.setString(2, now);
+                stmt.setLong(3, runId);
+                stmt.setString(4, GroupRun.SUCCEEDED);
+                stmt.executeUpdate();
+            }
+            String runSql = "UPDATE group_runs SET status = ?, finished_at = NULL WHERE id = ?";
+            try (PreparedStatement stmt = connection.prepareStatement(runSql)) {
+                stmt.setString(1, GroupRun.RUNNING);
+                stmt.setLong(2, runId);
+                stmt.executeUpdate();
+            }
+            insertPendingSteps(runId, scriptPaths, now);
+            return null;
+        });
+    }
+
+    private void insertPendingSteps(long runId, List<String> scriptPaths, String now) throws SQLException {
+        String stepSql = "INSERT OR IGNORE INTO group_run_steps (run_id, position, script_path, status, updated_at) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(stepSql)) {
+            for (int i = 0; i < scriptPaths.size(); i++) {
+                stmt.setLong(1, runId);
+                stmt.setInt(2, i);
+                stmt.setString(3, scriptPaths.get(i));
+                stmt.setString(4, GroupRun.PENDING);
+                stmt.setString(5, now);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Records the state of one step; written before and after each script so a crash leaves it "running"
+     */
+    public synchronized void updateGroupRunStep(long runId, String scriptPath, String status, Integer exitCode) throws SQLException {
+        String sql = "UPDATE group_run_steps SET status = ?, exit_code = ?, updated_at = ? WHERE run_id = ? AND script_path = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, status);
+            if (exitCode == null) {
+                stmt.setNull(2, Types.INTEGER);
+            } else {
+                stmt.setInt(2, exitCode);
+            }
+            stmt.setString(3, LocalDateTime.now().toString());
+            stmt.setLong(4, runId);
+            stmt.setString(5, scriptPath);
             stmt.executeUpdate();
         }
-        
-        // Then remove the group itself
-        String deleteGroupSql = "DELETE FROM script_groups WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(deleteGroupSql)) {
-            stmt.setLong(1, groupId);
+    }
+
+    public synchronized void finishGroupRun(long runId, String status) throws SQLException {
+        String sql = "UPDATE group_runs SET status = ?, finished_at = ? WHERE id = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, status);
+            stmt.setString(2, LocalDateTime.now().toString());
+            stmt.setLong(3, runId);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Finds the latest run of a group if it failed or was interrupted
+     * @param groupId The group
+     * @return The run with its step states, or null if the latest run succeeded or there is none
+     */
+    public GroupRun getResumableGroupRun(Long groupId) throws SQLException {
+        Connection connection = readers.acquire();
+        try {
+            GroupRun run = null;
+            String runSql = "SELECT * FROM group_runs WHERE group_id = ? ORDER BY id DESC LIMIT 1";
+            try (PreparedStatement stmt = connection.prepareStatement(runSql)) {
+                stmt.setLong(1, groupId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next() && !GroupRun.SUCCEEDED.equals(rs.getString("status"))) {
+                        run = new GroupRun();
+                        run.setId(rs.getLong("id"));
+                        run.setGroupId(rs.getLong("group_id"));
+                        run.setStartedAt(LocalDateTime.parse(rs.getString("started_at")));
+                        run.setStatus(rs.getString("status"));
+                    }
+                }
+            }
+            if (run == null) {
+                return null;
+            }
+
+            String stepSql = "SELECT script_path, status FROM group_run_steps WHERE run_id = ? ORDER BY position";
+            try (PreparedStatement stmt = connection.prepareStatement(stepSql)) {
+                stmt.setLong(1, run.getId());
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        run.getStepStatuses().put(rs.getString("script_path"), rs.getString("status"));
+                    }
+                }
+            }
+            return run;
+        } finally {
+            readers.release(connection);
+        }
+    }
+
+    // Pre-flight Check Cache
+
+    /**
+     * Looks up cached pre-flight results
+     * @param cacheKeys Keys derived from script content and the checks performed
+     * @return The problems found for each cached key, empty for scripts that passed
+     */
+    public Map<String, String> getPreflightResults(Collection<String> cacheKeys) throws SQLException {
+        Connection connection = readers.acquire();
+        try {
+            Map<String, String> results = new HashMap<>();
+            if (cacheKeys.isEmpty()) {
+                return results;
+            }
+
+            String placeholders = String.join(", ", Collections.nCopies(cacheKeys.size(), "?"));
+            String sql = "SELECT cache_key, message FROM preflight_cache WHERE cache_key IN (" + placeholders + ")";
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                int index = 1;
+                for (String key : cacheKeys) {
+                    stmt.setString(index++, key);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String message = rs.getString("message");
+                        results.put(rs.getString("cache_key"), message == null ? "" : message);
+                    }
+                }
+            }
+            return results;
+        } finally {
+            readers.release(connection);
+        }
+    }
+
+    /**
+     * Stores pre-flight results in one transaction
+     * @param results Problems found keyed by cache key, empty for scripts that passed
+     */
+    public synchronized void savePreflightResults(Map<String, String> results) throws SQLException {
+        if (results.isEmpty()) {
+            return;
+        }
+        String now = LocalDateTime.now().toString();
+        inTransaction(() -> {
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "INSERT OR REPLACE INTO preflight_cache (cache_key, message, checked_at) VALUES (?, ?, ?)")) {
+                for (Map.Entry<String, String> entry : results.entrySet()) {
+                    stmt.setString(1, entry.getKey());
+                    stmt.setString(2, entry.getValue());
+                    stmt.setString(3, now);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    // Resource Limits
+
+    /**
+     * Loads the limits stored for a script or group
+     * @param scope {@link ResourceLimits#SCOPE_SCRIPT} or {@link ResourceLimits#SCOPE_GROUP}
+     * @param scopeKey The script path or group id
+     * @return The limits, or null if none are stored
+     */
+    public ResourceLimits getResourceLimits(String scope, String scopeKey) throws SQLException {
+        Connection connection = readers.acquire();
+        try {
+            String sql = "SELECT * FROM resource_limits WHERE scope = ? AND scope_key = ?";
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setString(1, scope);
+                stmt.setString(2, scopeKey);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    ResourceLimits limits = new ResourceLimits();
+                    limits.setCpuSeconds(getNullableLong(rs, "cpu_seconds"));
+                    limits.setAddressSpaceMb(getNullableLong(rs, "address_space_mb"));
+                    limits.setOpenFiles(getNullableLong(rs, "open_files"));
+                    Long niceLevel = getNullableLong(rs, "nice_level");
+                    limits.setNiceLevel(niceLevel == null ? null : niceLevel.intValue());
+                    limits.setIoClass(rs.getString("io_class"));
+                    limits.setMemoryMb(getNullableLong(rs, "memory_mb"));
+                    Long cpuQuota = getNullableLong(rs, "cpu_quota_percent");
+                    limits.setCpuQuotaPercent(cpuQuota == null ? null : cpuQuota.intValue());
+                    return limits;
+                }
+            }
+        } finally {
+            readers.release(connection);
+        }
+    }
+
+    /**
+     * Stores the limits of a script or group; empty limits remove the entry
+     */
+    public synchronized void saveResourceLimits(String scope, String scopeKey, ResourceLimits limits) throws SQLException {
+        if (limits == null || limits.isEmpty()) {
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "DELETE FROM resource_limits WHERE scope = ? AND scope_key = ?")) {
+                stmt.setString(1, scope);
+                stmt.setString(2, scopeKey);
+                stmt.executeUpdate();
+            }
+            return;
+        }
+
+        String sql = """
+            INSERT OR REPLACE INTO resource_limits (scope, scope_key, cpu_seconds, address_space_mb, open_files,
+                nice_level, io_class, memory_mb, cpu_quota_percent)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, scope);
+            stmt.setString(2, scopeKey);
+            stmt.setObject(3, limits.getCpuSeconds());
+            stmt.setObject(4, limits.getAddressSpaceMb());
+            stmt.setObject(5, limits.getOpenFiles());
+            stmt.setObject(6, limits.getNiceLevel());
+            stmt.setString(7, limits.getIoClass());
+            stmt.setObject(8, limits.getMemoryMb());
+            stmt.setObject(9, limits.getCpuQuotaPercent());
             stmt.executeUpdate();
         }
     }
 
-    public void close() throws SQLException {
+    // Transactions
+
+    /**
+     * Runs work on the writer connection in one transaction. Called while a transaction
+     * is open, the work runs in a savepoint of it instead: if it fails, only its own
+     * changes are rolled back and the caller's transaction stays usable. Catalog updates
+     * are applied when the outermost transaction commits and dropped with a rollback.
+     * @return What the work returned
+     */
+    public synchronized <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            return inSavepoint(work);
+        }
+        connection.setAutoCommit(false);
+        try {
+            T result = work.run();
+            connection.commit();
+            List<Runnable> updates = new ArrayList<>(afterCommit);
+            afterCommit.clear();
+            updates.forEach(Runnable::run);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            afterCommit.clear();
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private <T> T inSavepoint(SqlWork<T> work) throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        int pendingUpdates = afterCommit.size();
+        try {
+            T result = work.run();
+            connection.releaseSavepoint(savepoint);
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback(savepoint);
+            connection.releaseSavepoint(savepoint);
+            afterCommit.subList(pendingUpdates, afterCommit.size()).clear();
+            throw e;
+        }
+    }
+
+    /**
+     * Applies a catalog update once the current write is committed
+     */
+    private void afterCommit(Runnable update) throws SQLException {
+        if (connection.getAutoCommit()) {
+            update.run();
+        } else {
+            afterCommit.add(update);
+        }
+    }
+
+    private static Long getNullableLong(ResultSet rs, String column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    /**
+     * Compacts the database if the writer made no changes since the previous check
+     */
+    private void compactIfIdle() {
+        try {
+            long changes;
+            synchronized (this) {
+                try (Statement stmt = connection.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT total_changes()")) {
+                    changes = rs.next() ? rs.getLong(1) : 0;
+                }
+            }
+            boolean idle = changes == changesAtLastCheck;
+            changesAtLastCheck = changes;
+            if (idle) {
+                compact();
+            }
+        } catch (SQLException e) {
+            System.err.println("Database maintenance failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Merges the search index and returns free pages to the file system once enough of the
+     * file is unused. A database created before incremental vacuuming is converted by a full
+     * VACUUM the first time.
+     */
+    public synchronized void compact() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            long pages = pragmaLong(stmt, "page_count");
+            long free = pragmaLong(stmt, "freelist_count");
+            if (free == 0 || free < pages * COMPACT_FREE_RATIO) {
+                return;
+            }
+            stmt.execute("INSERT INTO scripts_fts (scripts_fts) VALUES ('optimize')");
+            if (pragmaLong(stmt, "auto_vacuum") == 2) {
+                // Frees one page per result row, so all rows must be read
+                try (ResultSet rs = stmt.executeQuery("PRAGMA incremental_vacuum")) {
+                    while (rs.next()) {
+                        // Keep stepping
+                    }
+                }
+            } else {
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                stmt.execute("VACUUM");
+            }
+            try (ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(TRUNCATE)")) {
+                rs.next();
+            }
+            System.out.println("Compacted database: " + (pages - pragmaLong(stmt, "page_count")) + " of " + pages + " pages freed");
+        }
+    }
+
+    private static long pragmaLong(Statement stmt, String pragma) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    public synchronized void close() throws SQLException {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        if (readers != null) {
+            readers.close();
+        }
         if (connection != null && !connection.isClosed()) {
             connection.close();
         }
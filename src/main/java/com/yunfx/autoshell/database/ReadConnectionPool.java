@@ -0,0 +1,61 @@
+package com.yunfx.autoshell.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A fixed set of read-only SQLite connections. In WAL mode readers never wait
+ * for the writer, so UI queries keep running while history or catalog writes
+ * are in progress. A connection is used by one thread at a time.
+ */
+class ReadConnectionPool {
+    /**
+     * Opens one pooled connection
+     */
+    interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    private final BlockingQueue<Connection> idle;
+    private final List<Connection> all = new ArrayList<>();
+
+    ReadConnectionPool(int size, ConnectionFactory factory) throws SQLException {
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            Connection connection = factory.open();
+            all.add(connection);
+            idle.add(connection);
+        }
+    }
+
+    /**
+     * Takes a connection, waiting while all of them are in use
+     */
+    Connection acquire() throws SQLException {
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+    }
+
+    /**
+     * Returns a connection taken with {@link #acquire()}
+     */
+    void release(Connection connection) {
+        idle.offer(connection);
+    }
+
+    void close() throws SQLException {
+        for (Connection connection : all) {
+            if (!connection.isClosed()) {
+                connection.close();
+            }
+        }
+    }
+}
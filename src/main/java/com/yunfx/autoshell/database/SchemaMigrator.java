@@ -0,0 +1,101 @@
+package com.yunfx.autoshell.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings the schema up to date with ordered, numbered migrations. The applied
+ * versions are recorded in schema_version; each pending migration runs in its
+ * own transaction together with its version row, so a failed migration leaves
+ * no trace and is retried on the next start.
+ */
+class SchemaMigrator {
+    /**
+     * One schema change, applied on the connection's open transaction
+     */
+    interface Migration {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private static class Step {
+        private final int version;
+        private final String description;
+        private final Migration migration;
+
+        Step(int version, String description, Migration migration) {
+            this.version = version;
+            this.description = description;
+            this.migration = migration;
+        }
+    }
+
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * Registers a migration
+     * @param version Version the schema has after the migration; must be higher than the previous one
+     * @param description What the migration does, recorded with the version
+     */
+    SchemaMigrator add(int version, String description, Migration migration) {
+        if (!steps.isEmpty() && version <= steps.get(steps.size() - 1).version) {
+            throw new IllegalArgumentException("Migration versions must increase: " + version);
+        }
+        steps.add(new Step(version, description, migration));
+        return this;
+    }
+
+    /**
+     * Applies the migrations newer than the schema's version
+     * @return The schema version afterwards
+     */
+    int migrate(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                    version INTEGER PRIMARY KEY,
+                    description TEXT NOT NULL,
+                    applied_at TEXT NOT NULL
+                )
+            """);
+        }
+        int current = currentVersion(connection);
+
+        for (Step step : steps) {
+            if (step.version <= current) {
+                continue;
+            }
+            System.out.println("Migrating schema to version " + step.version + ": " + step.description + "...");
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement record = connection.prepareStatement(
+                    "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+                step.migration.apply(connection);
+                record.setInt(1, step.version);
+                record.setString(2, step.description);
+                record.setString(3, LocalDateTime.now().toString());
+                record.executeUpdate();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw new SQLException("Schema migration " + step.version + " failed: " + e.getMessage(), e);
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            current = step.version;
+        }
+        return current;
+    }
+
+    private static int currentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.yunfx.autoshell.database;
+
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.model.ScriptGroup;
+
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The stored scripts and group memberships, held in memory and indexed by path,
+ * group and tag. It is loaded from the database on first use; afterwards the
+ * {@link DatabaseManager} write paths update it after each commit, so reads never
+ * touch SQLite. Scripts are metadata-only and load their bodies on demand.
+ */
+public class ScriptCatalog {
+    private final DatabaseManager dbManager;
+
+    private boolean loaded;
+    private final Map<String, Script> scriptsByPath = new HashMap<>();
+    private final Map<Long, List<String>> membersByGroup = new HashMap<>();
+    private final Map<String, Set<String>> pathsByTag = new HashMap<>();
+    private List<Script> sortedByName;
+
+    ScriptCatalog(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    /**
+     * @return All scripts ordered by name
+     */
+    public synchronized List<Script> getAllScripts() throws SQLException {
+        return new ArrayList<>(sortedByName());
+    }
+
+    /**
+     * @return The script stored under a path, or null
+     */
+    public synchronized Script getScript(String path) throws SQLException {
+        ensureLoaded();
+        return scriptsByPath.get(path);
+    }
+
+    /**
+     * @return The members of a group in stage order
+     */
+    public synchronized List<Script> getScriptsByGroup(Long groupId) throws SQLException {
+        ensureLoaded();
+        List<Script> scripts = new ArrayList<>();
+        for (String path : membersByGroup.getOrDefault(groupId, List.of())) {
+            Script script = scriptsByPath.get(path);
+            if (script != null) {
+                scripts.add(script);
+            }
+        }
+        return scripts;
+    }
+
+    /**
+     * Finds the scripts that carry all of the given tags
+     * @param tags Tags to match, ignoring case
+     * @return Matching scripts ordered by name; all scripts if no tags are given
+     */
+    public synchronized List<Script> findScriptsByTags(Collection<String> tags) throws SQLException {
+        if (tags.isEmpty()) {
+            return getAllScripts();
+        }
+        ensureLoaded();
+        Set<String> matching = null;
+        for (String tag : tags) {
+            Set<String> tagged = pathsByTag.getOrDefault(tag.toLowerCase(), Set.of());
+            if (matching == null) {
+                matching = new HashSet<>(tagged);
+            } else {
+                matching.retainAll(tagged);
+            }
+        }
+        // Filtering the sorted list is cheaper than sorting the matches
+        List<Script> scripts = new ArrayList<>(matching.size());
+        for (Script script : sortedByName()) {
+            if (matching.contains(script.getFilePath().toString())) {
+                scripts.add(script);
+            }
+        }
+        return scripts;
+    }
+
+    /**
+     * @return Every tag in use, ordered alphabetically ignoring case
+     */
+    public synchronized List<String> getAllTags() throws SQLException {
+        ensureLoaded();
+        Set<String> tags = new LinkedHashSet<>();
+        scriptsByPath.values().forEach(script -> tags.addAll(script.getTags()));
+        List<String> sorted = new ArrayList<>(tags);
+        sorted.sort(String.CASE_INSENSITIVE_ORDER);
+        return sorted;
+    }
+
+    private List<Script> sortedByName() throws SQLException {
+        ensureLoaded();
+        if (sortedByName == null) {
+            sortedByName = new ArrayList<>(scriptsByPath.values());
+            sortedByName.sort(Comparator.comparing(Script::getName));
+        }
+        return sortedByName;
+    }
+
+    private void ensureLoaded() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        // Only reader connections are used, so writers waiting on this monitor cannot deadlock
+        for (Script script : dbManager.getAllScripts()) {
+            putScript(script);
+        }
+        for (ScriptGroup group : dbManager.getAllGroups()) {
+            List<String> members = new ArrayList<>();
+            group.getScripts().forEach(script -> members.add(script.getFilePath().toString()));
+            membersByGroup.put(group.getId(), members);
+        }
+        loaded = true;
+    }
+
+    // Updates from the write paths, applied after the change is committed. They are
+    // ignored until the catalog is loaded, since loading reads the committed state.
+
+    synchronized void scriptsSaved(Collection<Script> scripts) {
+        if (loaded) {
+            scripts.forEach(this::putScript);
+        }
+    }
+
+    synchronized void scriptMoved(String oldPath, String newPath) {
+        if (!loaded) {
+            return;
+        }
+        Script script = removeScript(oldPath);
+        if (script != null) {
+            script.setFilePath(Paths.get(newPath));
+            putScript(script);
+        }
+        for (List<String> members : membersByGroup.values()) {
+            members.replaceAll(path -> path.equals(oldPath) ? newPath : path);
+        }
+    }
+
+    synchronized void scriptsRemoved(Collection<String> paths) {
+        if (!loaded) {
+            return;
+        }
+        Set<String> removed = new HashSet<>(paths);
+        removed.forEach(this::removeScript);
+        for (List<String> members : membersByGroup.values()) {
+            members.removeIf(removed::contains);
+        }
+    }
+
+    synchronized void memberAdded(Long groupId, String path) {
+        if (loaded) {
+            List<String> members = membersByGroup.computeIfAbsent(groupId, id -> new ArrayList<>());
+            if (!members.contains(path)) {
+                members.add(path);
+            }
+        }
+    }
+
+    synchronized void memberRemoved(Long groupId, String path) {
+        if (loaded) {
+            membersByGroup.getOrDefault(groupId, new ArrayList<>()).remove(path);
+        }
+    }
+
+    synchronized void groupRemoved(Long groupId) {
+        if (loaded) {
+            membersByGroup.remove(groupId);
+        }
+    }
+
+    private void putScript(Script script) {
+        String path = script.getFilePath().toString();
+        removeScript(path);
+        scriptsByPath.put(path, script);
+        for (String tag : script.getTags()) {
+            pathsByTag.computeIfAbsent(tag.toLowerCase(), key -> new HashSet<>()).add(path);
+        }
+        sortedByName = null;
+    }
+
+    private Script removeScript(String path) {
+        Script script = scriptsByPath.remove(path);
+        if (script != null) {
+            for (String tag : script.getTags()) {
+                Set<String> tagged = pathsByTag.get(tag.toLowerCase());
+                if (tagged != null) {
+                    tagged.remove(path);
+                    if (tagged.isEmpty()) {
+                        pathsByTag.remove(tag.toLowerCase());
+                    }
+                }
+            }
+            sortedByName = null;
+        }
+        return script;
+    }
+}
@@ -0,0 +1,48 @@
+package com.yunfx.autoshell.model;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A persisted execution of a script group with the state of each of its steps
+ */
+public class GroupRun {
+    public static final String PENDING = "pending";
+    public static final String RUNNING = "running";
+    public static final String SUCCEEDED = "succeeded";
+    public static final String FAILED = "failed";
+
+    private Long id;
+    private Long groupId;
+    private LocalDateTime startedAt;
+    private String status;
+    private Map<String, String> stepStatuses;
+
+    public GroupRun() {
+        this.stepStatuses = new LinkedHashMap<>();
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getGroupId() { return groupId; }
+    public void setGroupId(Long groupId) { this.groupId = groupId; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    /**
+     * Step states keyed by script path, in step order
+     */
+    public Map<String, String> getStepStatuses() { return stepStatuses; }
+    public void setStepStatuses(Map<String, String> stepStatuses) { this.stepStatuses = stepStatuses; }
+
+    public int getSucceededSteps() {
+        return (int) stepStatuses.values().stream().filter(SUCCEEDED::equals).count();
+    }
+}
@@ -0,0 +1,72 @@
+package com.yunfx.autoshell.model;
+
+/**
+ * Resource limits applied to a script's process. Limits can be set per script
+ * and per group; unset (null) values are not limited. Memory and CPU quota need
+ * a cgroup v2 hierarchy delegated to the user.
+ */
+public class ResourceLimits {
+    public static final String SCOPE_SCRIPT = "script";
+    public static final String SCOPE_GROUP = "group";
+
+    public static final String IO_CLASS_BEST_EFFORT = "best-effort";
+    public static final String IO_CLASS_IDLE = "idle";
+
+    private Long cpuSeconds;
+    private Long addressSpaceMb;
+    private Long openFiles;
+    private Integer niceLevel;
+    private String ioClass;
+    private Long memoryMb;
+    private Integer cpuQuotaPercent;
+
+    public ResourceLimits() {
+    }
+
+    // Getters and Setters
+    public Long getCpuSeconds() { return cpuSeconds; }
+    public void setCpuSeconds(Long cpuSeconds) { this.cpuSeconds = cpuSeconds; }
+
+    public Long getAddressSpaceMb() { return addressSpaceMb; }
+    public void setAddressSpaceMb(Long addressSpaceMb) { this.addressSpaceMb = addressSpaceMb; }
+
+    public Long getOpenFiles() { return openFiles; }
+    public void setOpenFiles(Long openFiles) { this.openFiles = openFiles; }
+
+    public Integer getNiceLevel() { return niceLevel; }
+    public void setNiceLevel(Integer niceLevel) { this.niceLevel = niceLevel; }
+
+    public String getIoClass() { return ioClass; }
+    public void setIoClass(String ioClass) { this.ioClass = ioClass; }
+
+    public Long getMemoryMb() { return memoryMb; }
+    public void setMemoryMb(Long memoryMb) { this.memoryMb = memoryMb; }
+
+    public Integer getCpuQuotaPercent() { return cpuQuotaPercent; }
+    public void setCpuQuotaPercent(Integer cpuQuotaPercent) { this.cpuQuotaPercent = cpuQuotaPercent; }
+
+    public boolean isEmpty() {
+        return cpuSeconds == null && addressSpaceMb == null && openFiles == null && niceLevel == null
+            && ioClass == null && memoryMb == null && cpuQuotaPercent == null;
+    }
+
+    /**
+     * Combines these limits with defaults, e.g. a script's own limits with its group's
+     * @param defaults Limits used where this object sets none; may be null
+     * @return A new object holding the effective limits
+     */
+    public ResourceLimits withDefaults(ResourceLimits defaults) {
+        ResourceLimits merged = new ResourceLimits();
+        if (defaults == null) {
+            defaults = new ResourceLimits();
+        }
+        merged.cpuSeconds = cpuSeconds != null ? cpuSeconds : defaults.cpuSeconds;
+        merged.addressSpaceMb = addressSpaceMb != null ? addressSpaceMb : defaults.addressSpaceMb;
+        merged.openFiles = openFiles != null ? openFiles : defaults.openFiles;
+        merged.niceLevel = niceLevel != null ? niceLevel : defaults.niceLevel;
+        merged.ioClass = ioClass != null ? ioClass : defaults.ioClass;
+        merged.memoryMb = memoryMb != null ? memoryMb : defaults.memoryMb;
+        merged.cpuQuotaPercent = cpuQuotaPercent != null ? cpuQuotaPercent : defaults.cpuQuotaPercent;
+        return merged;
+    }
+}
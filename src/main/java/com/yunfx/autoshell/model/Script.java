@@ -1,18 +1,25 @@
 package com.yunfx.autoshell.model;
 
+import java.lang.ref.SoftReference;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class Script {
     private String name;
     private String description;
     private Path filePath;
+    private String fileKey;
     private LocalDateTime lastModified;
     private List<String> tags;
     private boolean executable;
     private String content;
+    private String contentHash;
+    private Supplier<String> contentLoader;
+    // A lazily loaded body may be dropped under memory pressure and is then loaded again
+    private SoftReference<String> loadedContent;
 
     public Script() {
         this.tags = new ArrayList<>();
@@ -34,6 +41,12 @@ public class Script {
     public Path getFilePath() { return filePath; }
     public void setFilePath(Path filePath) { this.filePath = filePath; }
 
+    /**
+     * @return Identity of the file on disk (device and inode), which survives renames; null if unknown
+     */
+    public String getFileKey() { return fileKey; }
+    public void setFileKey(String fileKey) { this.fileKey = fileKey; }
+
     public LocalDateTime getLastModified() { return lastModified; }
     public void setLastModified(LocalDateTime lastModified) { this.lastModified = lastModified; }
 
@@ -43,8 +56,45 @@ public class Script {
     public boolean isExecutable() { return executable; }
     public void setExecutable(boolean executable) { this.executable = executable; }
 
-    public String getContent() { return content; }
-    public void setContent(String content) { this.content = content; }
+    /**
+     * @return The script body; scripts loaded from the database fetch it on first use.
+     *         Safe to call from several threads, since catalog scripts are shared
+     */
+    public synchronized String getContent() {
+        if (content != null || contentLoader == null) {
+            return content;
+        }
+        String loaded = loadedContent == null ? null : loadedContent.get();
+        if (loaded == null) {
+            loaded = contentLoader.get();
+            loadedContent = new SoftReference<>(loaded);
+        }
+        return loaded;
+    }
+
+    public synchronized void setContent(String content) {
+        this.content = content;
+        this.contentHash = null;
+        this.contentLoader = null;
+        this.loadedContent = null;
+    }
+
+    /**
+     * @return Hash of the stored body, or null if the content was set since the script was loaded
+     */
+    public synchronized String getContentHash() { return contentHash; }
+
+    /**
+     * Defers loading the body until {@link #getContent()} is called
+     * @param contentHash Hash of the stored body
+     * @param contentLoader Fetches the body
+     */
+    public synchronized void setLazyContent(String contentHash, Supplier<String> contentLoader) {
+        this.content = null;
+        this.contentHash = contentHash;
+        this.contentLoader = contentLoader;
+        this.loadedContent = null;
+    }
 
     public void addTag(String tag) {
         if (!tags.contains(tag)) {
@@ -5,15 +5,23 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class ScriptGroup {
+    /**
+     * How the members of a group are run: independently, or as a pipeline where
+     * each member's stdout feeds the next member's stdin
+     */
+    public enum Type { STANDARD, PIPELINE }
+
     private Long id;
     private String name;
     private String description;
     private LocalDateTime createdAt;
     private List<Script> scripts;
+    private Type type;
 
     public ScriptGroup() {
         this.scripts = new ArrayList<>();
         this.createdAt = LocalDateTime.now();
+        this.type = Type.STANDARD;
     }
 
     public ScriptGroup(String name) {
@@ -34,6 +42,11 @@ public class ScriptGroup {
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+
+    public boolean isPipeline() { return type == Type.PIPELINE; }
+
     public List<Script> getScripts() { return scripts; }
     public void setScripts(List<Script> scripts) { this.scripts = scripts; }
 
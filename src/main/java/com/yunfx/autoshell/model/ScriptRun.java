@@ -0,0 +1,47 @@
+package com.yunfx.autoshell.model;
+
+import java.time.LocalDateTime;
+
+public class ScriptRun {
+    private Long id;
+    private String scriptPath;
+    private LocalDateTime startedAt;
+    private long durationMs;
+    private int exitCode;
+    private boolean success;
+    private String inputHash;
+    private String limitViolation;
+
+    public ScriptRun() {
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getScriptPath() { return scriptPath; }
+    public void setScriptPath(String scriptPath) { this.scriptPath = scriptPath; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public long getDurationMs() { return durationMs; }
+    public void setDurationMs(long durationMs) { this.durationMs = durationMs; }
+
+    public int getExitCode() { return exitCode; }
+    public void setExitCode(int exitCode) { this.exitCode = exitCode; }
+
+    public boolean isSuccess() { return success; }
+    public void setSuccess(boolean success) { this.success = success; }
+
+    public String getInputHash() { return inputHash; }
+    public void setInputHash(String inputHash) { this.inputHash = inputHash; }
+
+    public String getLimitViolation() { return limitViolation; }
+    public void setLimitViolation(String limitViolation) { this.limitViolation = limitViolation; }
+
+    @Override
+    public String toString() {
+        return scriptPath + " @ " + startedAt;
+    }
+}
@@ -0,0 +1,49 @@
+package com.yunfx.autoshell.service;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Resolves executables by scanning the PATH entries in-process, the same way
+ * the shell does, without spawning `which` or probing by running the binary.
+ */
+public final class BinaryLocator {
+    
+    private BinaryLocator() {
+    }
+    
+    /**
+     * Finds an executable on the current PATH
+     * @param name The binary name, e.g. "xterm"
+     * @return The first executable match, or empty if none is found
+     */
+    public static Optional<Path> find(String name) {
+        String path = System.getenv("PATH");
+        if (path == null || path.isEmpty()) {
+            return Optional.empty();
+        }
+        
+        for (String entry : path.split(File.pathSeparator)) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            Path candidate = Paths.get(entry, name);
+            if (Files.isRegularFile(candidate) && Files.isExecutable(candidate)) {
+                return Optional.of(candidate);
+            }
+        }
+        return Optional.empty();
+    }
+    
+    /**
+     * Checks whether an executable is available on the current PATH
+     * @param name The binary name
+     * @return true if the binary can be found
+     */
+    public static boolean isAvailable(String name) {
+        return find(name).isPresent();
+    }
+}
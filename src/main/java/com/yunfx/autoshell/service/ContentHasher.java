@@ -0,0 +1,93 @@
+package com.yunfx.autoshell.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * SHA-256 hashing of script content and of the files a script declares as inputs
+ */
+public final class ContentHasher {
+
+    private ContentHasher() {
+    }
+
+    /**
+     * Hashes a string
+     * @param content The text to hash
+     * @return Lowercase hex SHA-256 digest
+     */
+    public static String sha256Hex(String content) {
+        MessageDigest digest = newDigest();
+        digest.update(content.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hashes a script's content together with all of its declared inputs.
+     * Directories are walked recursively in a stable order, and missing inputs
+     * contribute a marker so creating them later changes the hash.
+     * @param scriptPath Path of the script; relative inputs resolve against its directory
+     * @param content Current script content
+     * @param inputs Declared input paths
+     * @return Lowercase hex SHA-256 digest
+     */
+    public static String hashInputs(Path scriptPath, String content, List<String> inputs) throws IOException {
+        MessageDigest digest = newDigest();
+        update(digest, "script\0");
+        digest.update(content.getBytes(StandardCharsets.UTF_8));
+
+        Path baseDirectory = scriptPath.getParent();
+        for (String input : inputs) {
+            Path inputPath = baseDirectory.resolve(input).normalize();
+            update(digest, "\0input\0" + input + "\0");
+
+            if (!Files.exists(inputPath)) {
+                update(digest, "missing");
+            } else if (Files.isDirectory(inputPath)) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(inputPath)) {
+                    files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    update(digest, "\0file\0" + inputPath.relativize(file) + "\0");
+                    updateWithFile(digest, file);
+                }
+            } else {
+                updateWithFile(digest, inputPath);
+            }
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void updateWithFile(MessageDigest digest, Path file) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private static void update(MessageDigest digest, String text) {
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.yunfx.autoshell.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks whether the application's dependencies are installed. Binaries and
+ * directories are resolved in-process; package state comes from a single
+ * dpkg-query call, made only when something was not found on disk. Results are
+ * cached in a file and reused until PATH or the dpkg database changes, so a
+ * normal startup spawns no processes at all.
+ */
+public class DependencyProbe {
+    private static final Path CACHE_FILE = Paths.get(System.getProperty("user.home"), ".local", "share", "yunfx-autoshell", "dependencies.properties");
+    private static final Path DPKG_STATUS = Paths.get("/var/lib/dpkg/status");
+    private static final long DPKG_QUERY_TIMEOUT_SECONDS = 30;
+
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final String MISSING_KEY = "missing";
+
+    /**
+     * A dependency and how to recognize it
+     */
+    public static class Dependency {
+        private final String name;
+        private final String binary;
+        private final Path directory;
+        private final String packageName;
+
+        /**
+         * @param name Display name
+         * @param binary Executable looked up on PATH, or null
+         * @param directory Directory that must exist, or null
+         * @param packageName Debian package that provides the dependency
+         */
+        public Dependency(String name, String binary, Path directory, String packageName) {
+            this.name = name;
+            this.binary = binary;
+            this.directory = directory;
+            this.packageName = packageName;
+        }
+
+        public String getName() { return name; }
+        public String getBinary() { return binary; }
+        public Path getDirectory() { return directory; }
+        public String getPackageName() { return packageName; }
+    }
+
+    public static final List<Dependency> REQUIRED = List.of(
+        new Dependency("Java", "java", null, "openjdk-17-jdk"),
+        new Dependency("Maven", "mvn", null, "maven"),
+        new Dependency("JavaFX", null, Paths.get("/usr/share/openjfx/lib"), "openjfx"));
+
+    /**
+     * Finds the dependencies that are not installed
+     * @param dependencies The dependencies to check
+     * @return The missing ones, in the given order
+     */
+    public List<Dependency> findMissing(List<Dependency> dependencies) {
+        String fingerprint = fingerprint(dependencies);
+        List<String> cachedMissing = readCache(fingerprint);
+        if (cachedMissing != null) {
+            // Something can be installed into a directory already on PATH without changing the fingerprint
+            List<Dependency> missing = new ArrayList<>();
+            for (Dependency dependency : dependencies) {
+                if (cachedMissing.contains(dependency.getName()) && !isOnDisk(dependency)) {
+                    missing.add(dependency);
+                }
+            }
+            if (missing.size() < cachedMissing.size()) {
+                writeCache(fingerprint, missing);
+            }
+            return missing;
+        }
+
+        List<Dependency> notOnDisk = new ArrayList<>();
+        for (Dependency dependency : dependencies) {
+            if (!isOnDisk(dependency)) {
+                notOnDisk.add(dependency);
+            }
+        }
+
+        // A package may be installed without being on PATH, e.g. a JDK managed by alternatives
+        List<Dependency> missing = new ArrayList<>();
+        if (!notOnDisk.isEmpty()) {
+            Set<String> installed = queryInstalledPackages(notOnDisk);
+            for (Dependency dependency : notOnDisk) {
+                if (!installed.contains(dependency.getPackageName())) {
+                    missing.add(dependency);
+                }
+            }
+        }
+
+        writeCache(fingerprint, missing);
+        return missing;
+    }
+
+    /**
+     * Checks a single dependency without reading or replacing the cached result
+     * @return true if it is installed
+     */
+    public boolean isInstalled(Dependency dependency) {
+        return isOnDisk(dependency) || queryInstalledPackages(List.of(dependency)).contains(dependency.getPackageName());
+    }
+
+    /**
+     * Forgets the cached result, e.g. after installing a dependency
+     */
+    public void invalidate() {
+        try {
+            Files.deleteIfExists(CACHE_FILE);
+        } catch (IOException e) {
+            System.err.println("Failed to remove dependency cache: " + e.getMessage());
+        }
+    }
+
+    private boolean isOnDisk(Dependency dependency) {
+        if (dependency.getBinary() != null && BinaryLocator.isAvailable(dependency.getBinary())) {
+            return true;
+        }
+        return dependency.getDirectory() != null && Files.isDirectory(dependency.getDirectory());
+    }
+
+    /**
+     * Asks dpkg once for the state of all the given packages
+     * @return Names of the packages that are installed
+     */
+    private Set<String> queryInstalledPackages(Collection<Dependency> dependencies) {
+        Set<String> installed = new HashSet<>();
+        if (!BinaryLocator.isAvailable("dpkg-query")) {
+            return installed;
+        }
+
+        List<String> command = new ArrayList<>(List.of("dpkg-query", "-W", "-f", "${Package}\\t${db:Status-Status}\\n"));
+        for (Dependency dependency : dependencies) {
+            command.add(dependency.getPackageName());
+        }
+        try {
+            Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (!process.waitFor(DPKG_QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return installed;
+            }
+            // Exits with 1 when some packages are unknown; the known ones are still listed
+            for (String line : output.split("\n")) {
+                String[] fields = line.split("\t");
+                if (fields.length == 2 && fields[1].equals("installed")) {
+                    installed.add(fields[0].replaceFirst(":.*$", "")); // Strip the architecture qualifier
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Failed to query installed packages: " + e.getMessage());
+        }
+        return installed;
+    }
+
+    /**
+     * Identifies everything the result depends on: the checked dependencies, PATH and the dpkg database
+     */
+    private String fingerprint(List<Dependency> dependencies) {
+        StringBuilder fingerprint = new StringBuilder();
+        for (Dependency dependency : dependencies) {
+            fingerprint.append(dependency.getName()).append('|').append(dependency.getBinary()).append('|')
+                .append(dependency.getDirectory()).append('|').append(dependency.getPackageName()).append('\n');
+        }
+        fingerprint.append(System.getenv("PATH")).append('\n');
+        try {
+            fingerprint.append(Files.getLastModifiedTime(DPKG_STATUS).toMillis());
+        } catch (IOException e) {
+            fingerprint.append("no-dpkg");
+        }
+        return ContentHasher.sha256Hex(fingerprint.toString());
+    }
+
+    private List<String> readCache(String fingerprint) {
+        if (!Files.exists(CACHE_FILE)) {
+            return null;
+        }
+        Properties cache = new Properties();
+        try (Reader reader = Files.newBufferedReader(CACHE_FILE, StandardCharsets.UTF_8)) {
+            cache.load(reader);
+        } catch (IOException e) {
+            return null;
+        }
+        if (!fingerprint.equals(cache.getProperty(FINGERPRINT_KEY))) {
+            return null;
+        }
+        String missing = cache.getProperty(MISSING_KEY, "");
+        return missing.isEmpty() ? List.of() : List.of(missing.split(","));
+    }
+
+    private void writeCache(String fingerprint, List<Dependency> missing) {
+        Properties cache = new Properties();
+        cache.setProperty(FINGERPRINT_KEY, fingerprint);
+        List<String> names = new ArrayList<>();
+        missing.forEach(dependency -> names.add(dependency.getName()));
+        cache.setProperty(MISSING_KEY, String.join(",", names));
+        try {
+            Files.createDirectories(CACHE_FILE.getParent());
+            try (Writer writer = Files.newBufferedWriter(CACHE_FILE, StandardCharsets.UTF_8)) {
+                cache.store(writer, "YunFx AutoShell dependency probe");
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write dependency cache: " + e.getMessage());
+        }
+    }
+}
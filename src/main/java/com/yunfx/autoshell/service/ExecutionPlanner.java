@@ -0,0 +1,240 @@
+package com.yunfx.autoshell.service;
+
+import com.yunfx.autoshell.database.DatabaseManager;
+import com.yunfx.autoshell.model.Script;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Estimates how long scripts take from their recorded run history and uses the
+ * estimates for group ETAs, time-weighted progress and longest-first ordering.
+ * Scripts that never ran successfully get a heuristic estimate from their content.
+ */
+public class ExecutionPlanner {
+    private static final int HISTORY_RUNS = 20;
+
+    // Heuristic fallback
+    private static final long BASE_ESTIMATE_MS = 1000;
+    private static final long PER_LINE_MS = 20;
+    private static final long SLOW_COMMAND_MS = 30_000;
+    private static final double HEURISTIC_P90_FACTOR = 3.0;
+
+    // Commands that usually dominate a script's running time
+    private static final Pattern[] SLOW_COMMAND_PATTERNS = {
+        Pattern.compile("\\b(apt|apt-get|yum|dnf|pacman|zypper|snap|flatpak)\\s+(install|upgrade|update|dist-upgrade)\\b"),
+        Pattern.compile("\\b(pip3?|npm|yarn|cargo|go|gem|mvn|gradle)\\s+(install|build|get|package)\\b"),
+        Pattern.compile("\\bdocker\\s+(build|pull|compose)\\b"),
+        Pattern.compile("\\b(make|cmake|ninja)\\b"),
+        Pattern.compile("\\b(curl|wget|rsync|scp|git\\s+clone)\\b"),
+        Pattern.compile("\\b(tar|zip|gzip|xz|zstd)\\b")
+    };
+
+    /**
+     * Expected duration of one script
+     */
+    public static class Estimate {
+        private final long p50Ms;
+        private final long p90Ms;
+        private final boolean fromHistory;
+
+        public Estimate(long p50Ms, long p90Ms, boolean fromHistory) {
+            this.p50Ms = p50Ms;
+            this.p90Ms = p90Ms;
+            this.fromHistory = fromHistory;
+        }
+
+        public long getP50Ms() { return p50Ms; }
+        public long getP90Ms() { return p90Ms; }
+        public boolean isFromHistory() { return fromHistory; }
+    }
+
+    /**
+     * Estimates for every script of a group run
+     */
+    public static class Plan {
+        private final Map<String, Estimate> estimates;
+
+        Plan(Map<String, Estimate> estimates) {
+            this.estimates = estimates;
+        }
+
+        public Estimate getEstimate(Script script) {
+            return estimates.get(script.getFilePath().toString());
+        }
+
+        /**
+         * Orders scripts longest expected duration first, which keeps the slowest
+         * scripts from starting last when several run in parallel
+         */
+        public List<Script> longestFirst(List<Script> scripts) {
+            List<Script> ordered = new ArrayList<>(scripts);
+            ordered.sort(Comparator.comparingLong((Script script) -> getEstimate(script).getP50Ms()).reversed());
+            return ordered;
+        }
+
+        /**
+         * Expected wall-clock time of running the scripts in the given order on a number of workers
+         * @param scripts The scripts, in start order
+         * @param parallel Number of scripts running at once
+         * @param p90 Use the pessimistic estimate instead of the median
+         * @return Estimated time in milliseconds
+         */
+        public long estimateMakespan(List<Script> scripts, int parallel, boolean p90) {
+            PriorityQueue<Long> workers = new PriorityQueue<>();
+            for (int i = 0; i < Math.max(1, parallel); i++) {
+                workers.add(0L);
+            }
+            long makespan = 0;
+            for (Script script : scripts) {
+                Estimate estimate = getEstimate(script);
+                long finish = workers.poll() + (p90 ? estimate.getP90Ms() : estimate.getP50Ms());
+                workers.add(finish);
+                makespan = Math.max(makespan, finish);
+            }
+            return makespan;
+        }
+
+        public long totalP50Ms(List<Script> scripts) {
+            long total = 0;
+            for (Script script : scripts) {
+                total += getEstimate(script).getP50Ms();
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Tracks a sequential run and turns the estimates into time-weighted progress.
+     * Updated by the worker thread and read by the UI.
+     */
+    public static class ProgressTracker {
+        private final long totalEstimateMs;
+        private long finishedEstimateMs;
+        private long currentEstimateMs;
+        private long currentStartedAt;
+        private String currentLabel = "";
+
+        public ProgressTracker(long totalEstimateMs) {
+            this.totalEstimateMs = Math.max(1, totalEstimateMs);
+        }
+
+        public synchronized void stepStarted(String label, long estimateMs) {
+            currentLabel = label;
+            currentEstimateMs = estimateMs;
+            currentStartedAt = System.currentTimeMillis();
+        }
+
+        public synchronized void stepFinished() {
+            finishedEstimateMs += currentEstimateMs;
+            currentEstimateMs = 0;
+            currentStartedAt = 0;
+        }
+
+        /**
+         * @return Fraction of the expected work done, between 0 and 1
+         */
+        public synchronized double getProgress() {
+            return Math.min(1.0, (finishedEstimateMs + currentProgressMs()) / (double) totalEstimateMs);
+        }
+
+        /**
+         * @return Expected time until the run finishes; a script running longer than expected counts as nearly done
+         */
+        public synchronized long getRemainingMs() {
+            long currentRemaining = 0;
+            if (currentStartedAt != 0) {
+                long elapsed = System.currentTimeMillis() - currentStartedAt;
+                currentRemaining = Math.max(currentEstimateMs - elapsed, 1000);
+            }
+            return Math.max(0, totalEstimateMs - finishedEstimateMs - currentEstimateMs) + currentRemaining;
+        }
+
+        public synchronized String getCurrentLabel() {
+            return currentLabel;
+        }
+
+        private long currentProgressMs() {
+            if (currentStartedAt == 0) {
+                return 0;
+            }
+            // Never report a running script as complete, however long it overruns
+            return Math.min(System.currentTimeMillis() - currentStartedAt, currentEstimateMs * 95 / 100);
+        }
+    }
+
+    /**
+     * Builds the estimates for a set of scripts with a single history query
+     * @param scripts The scripts about to run
+     * @return The plan holding one estimate per script
+     */
+    public Plan plan(List<Script> scripts) {
+        List<String> paths = new ArrayList<>();
+        for (Script script : scripts) {
+            paths.add(script.getFilePath().toString());
+        }
+
+        Map<String, List<Long>> history;
+        try {
+            history = DatabaseManager.getInstance().getRecentDurations(paths, HISTORY_RUNS);
+        } catch (SQLException e) {
+            System.err.println("Failed to load run history: " + e.getMessage());
+            history = Collections.emptyMap();
+        }
+
+        Map<String, Estimate> estimates = new HashMap<>();
+        for (Script script : scripts) {
+            String path = script.getFilePath().toString();
+            List<Long> durations = history.get(path);
+            estimates.put(path, durations == null || durations.isEmpty()
+                ? heuristicEstimate(script)
+                : historyEstimate(durations));
+        }
+        return new Plan(estimates);
+    }
+
+    private Estimate historyEstimate(List<Long> durations) {
+        List<Long> sorted = new ArrayList<>(durations);
+        Collections.sort(sorted);
+        return new Estimate(percentile(sorted, 50), percentile(sorted, 90), true);
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        // Nearest-rank percentile
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    private Estimate heuristicEstimate(Script script) {
+        String content = script.getContent() == null ? "" : script.getContent();
+        long estimate = BASE_ESTIMATE_MS + content.lines().count() * PER_LINE_MS;
+        for (Pattern pattern : SLOW_COMMAND_PATTERNS) {
+            if (pattern.matcher(content).find()) {
+                estimate += SLOW_COMMAND_MS;
+            }
+        }
+        return new Estimate(estimate, (long) (estimate * HEURISTIC_P90_FACTOR), false);
+    }
+
+    /**
+     * Formats a duration for status messages, e.g. "45s" or "3m 20s"
+     */
+    public static String formatDuration(long millis) {
+        long seconds = Math.max(0, (millis + 999) / 1000);
+        if (seconds < 60) {
+            return seconds + "s";
+        }
+        long minutes = seconds / 60;
+        if (minutes < 60) {
+            return minutes + "m " + (seconds % 60) + "s";
+        }
+        return (minutes / 60) + "h " + (minutes % 60) + "m";
+    }
+}
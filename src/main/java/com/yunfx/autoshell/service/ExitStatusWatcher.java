@@ -0,0 +1,116 @@
+package com.yunfx.autoshell.service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Completes futures with the exit codes of processes that run outside the JVM
+ * (in terminals or tmux panes). Each process writes its exit code into a status
+ * file in a watched directory; the file must appear atomically, e.g. by writing
+ * a temporary file and renaming it.
+ */
+public class ExitStatusWatcher implements AutoCloseable {
+    private final Path directory;
+    private final WatchService watchService;
+    private final Map<String, CompletableFuture<Integer>> pending = new ConcurrentHashMap<>();
+    private final Thread watchThread;
+
+    /**
+     * Starts watching a new, empty directory, so no status file left over from an
+     * earlier run can complete a future
+     * @param parent Where the status directory is created; created if missing
+     * @param prefix Start of the status directory's name
+     */
+    public ExitStatusWatcher(Path parent, String prefix) throws IOException {
+        this.directory = Files.createTempDirectory(Files.createDirectories(parent), prefix);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        watchThread = new Thread(this::watch, "autoshell-exit-status-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the future exit code written to a status file
+     * @param fileName Name of the status file inside the watched directory
+     * @return A future completed with the exit code once the file appears
+     */
+    public CompletableFuture<Integer> expect(String fileName) {
+        CompletableFuture<Integer> future = pending.computeIfAbsent(fileName, name -> new CompletableFuture<>());
+        // The process may have finished before this call
+        readStatus(fileName);
+        return future;
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        pending.keySet().forEach(this::readStatus);
+                    } else {
+                        readStatus(((Path) event.context()).getFileName().toString());
+                    }
+                }
+                if (!key.reset()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private void readStatus(String fileName) {
+        CompletableFuture<Integer> future = pending.get(fileName);
+        if (future == null || future.isDone()) {
+            return;
+        }
+        try {
+            String content = Files.readString(directory.resolve(fileName)).trim();
+            if (!content.isEmpty()) {
+                future.complete(Integer.parseInt(content));
+            }
+        } catch (NumberFormatException e) {
+            future.complete(-1);
+        } catch (IOException e) {
+            // Not written yet
+        }
+    }
+
+    /**
+     * Stops watching and removes the status files. Unfinished futures fail.
+     */
+    @Override
+    public void close() {
+        pending.values().forEach(future ->
+            future.completeExceptionally(new IOException("Stopped waiting for the exit status")));
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close exit status watcher: " + e.getMessage());
+        }
+        try (var files = Files.list(directory)) {
+            files.forEach(file -> file.toFile().delete());
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            System.err.println("Failed to clean up " + directory + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.yunfx.autoshell.service;
+
+import com.yunfx.autoshell.database.DatabaseManager;
+import com.yunfx.autoshell.model.GroupRun;
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.model.ScriptGroup;
+import com.yunfx.autoshell.service.ScriptExecutionService.ExecutionResult;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Persists the progress of a group run step by step, so a failed or
+ * interrupted run can be resumed at its first unsuccessful step.
+ */
+public class GroupRunCheckpoint {
+    private final DatabaseManager dbManager;
+    private final long runId;
+    private final Set<String> completedPaths;
+    private boolean failed;
+
+    private GroupRunCheckpoint(DatabaseManager dbManager, long runId, Set<String> completedPaths) {
+        this.dbManager = dbManager;
+        this.runId = runId;
+        this.completedPaths = completedPaths;
+    }
+
+    /**
+     * Starts checkpointing a run of a group
+     * @param group The group about to run
+     * @param scripts Its scripts, in execution order
+     * @param resume Continue the group's last failed or interrupted run instead of starting over
+     * @return The checkpoint to report step progress to
+     */
+    public static GroupRunCheckpoint begin(ScriptGroup group, List<Script> scripts, boolean resume) throws SQLException {
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        List<String> paths = new ArrayList<>();
+        for (Script script : scripts) {
+            paths.add(script.getFilePath().toString());
+        }
+
+        GroupRun previous = resume ? dbManager.getResumableGroupRun(group.getId()) : null;
+        if (previous == null) {
+            return new GroupRunCheckpoint(dbManager, dbManager.createGroupRun(group.getId(), paths), new HashSet<>());
+        }
+
+        // Steps before the first unsuccessful one are done; everything from there on runs again.
+        // A step left "running" by a crash counts as unsuccessful.
+        Set<String> completed = new HashSet<>();
+        for (String path : paths) {
+            if (!GroupRun.SUCCEEDED.equals(previous.getStepStatuses().get(path))) {
+                break;
+            }
+            completed.add(path);
+        }
+        dbManager.reopenGroupRun(previous.getId(), paths);
+        for (String path : paths) {
+            if (!completed.contains(path) && GroupRun.SUCCEEDED.equals(previous.getStepStatuses().get(path))) {
+                dbManager.updateGroupRunStep(previous.getId(), path, GroupRun.PENDING, null);
+            }
+        }
+        return new GroupRunCheckpoint(dbManager, previous.getId(), completed);
+    }
+
+    /**
+     * @return true if the step succeeded in the run being resumed and must not run again
+     */
+    public boolean isCompleted(Script script) {
+        return completedPaths.contains(script.getFilePath().toString());
+    }
+
+    public int getCompletedCount() {
+        return completedPaths.size();
+    }
+
+    public void stepStarted(Script script) {
+        update(script, GroupRun.RUNNING, null);
+    }
+
+    /**
+     * Records a step's outcome; skipped steps (unchanged inputs) count as succeeded
+     */
+    public synchronized void stepFinished(Script script, ExecutionResult result) {
+        if (!result.isSuccess()) {
+            failed = true;
+        }
+        update(script, result.isSuccess() ? GroupRun.SUCCEEDED : GroupRun.FAILED, result.getExitCode());
+    }
+
+    /**
+     * Marks the run finished; a run with any failed step stays resumable
+     */
+    public synchronized void finish() {
+        try {
+            dbManager.finishGroupRun(runId, failed ? GroupRun.FAILED : GroupRun.SUCCEEDED);
+        } catch (SQLException e) {
+            System.err.println("Failed to finish group run " + runId + ": " + e.getMessage());
+        }
+    }
+
+    private void update(Script script, String status, Integer exitCode) {
+        try {
+            dbManager.updateGroupRunStep(runId, script.getFilePath().toString(), status, exitCode);
+        } catch (SQLException e) {
+            System.err.println("Failed to checkpoint " + script.getName() + ": " + e.getMessage());
+        }
+    }
+}
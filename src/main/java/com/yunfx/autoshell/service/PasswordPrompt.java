@@ -0,0 +1,28 @@
+package com.yunfx.autoshell.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asks the user for their sudo password. Implemented by the JavaFX UI and by
+ * the headless command line runner.
+ */
+public interface PasswordPrompt {
+    
+    /**
+     * Requests a password from the user
+     * @param reason Reason for requesting sudo password
+     * @param previousError Message explaining why the previous attempt was rejected, or null on the first attempt
+     * @return The entered password, or null if the user cancelled
+     */
+    String requestPassword(String reason, String previousError);
+    
+    /**
+     * Waits for background work started on behalf of a prompt, such as password validation.
+     * Prompts running on a UI thread override this to keep the UI responsive while waiting.
+     * @param future The work to wait for
+     * @return The result of the work
+     */
+    default <T> T await(CompletableFuture<T> future) {
+        return future.join();
+    }
+}
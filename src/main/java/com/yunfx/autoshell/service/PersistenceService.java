@@ -0,0 +1,260 @@
+package com.yunfx.autoshell.service;
+
+import com.yunfx.autoshell.database.DatabaseManager;
+import com.yunfx.autoshell.database.DatabaseManager.SqlWork;
+import com.yunfx.autoshell.model.ResourceLimits;
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.model.ScriptGroup;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Moves database work off the calling thread so the UI never waits on SQLite.
+ * Writes are queued for a single writer thread, which takes everything queued so
+ * far and commits it as one transaction, each write in its own savepoint so a
+ * failing write does not undo the others. A write submitted under the key of a
+ * write that is still queued replaces it: only the last of several edits to the
+ * same thing is written. Reads run on a small pool of their own.
+ */
+public class PersistenceService {
+    private static final int MAX_BATCH = 256;
+    private static final int READ_THREADS = 2;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private static PersistenceService instance;
+
+    /**
+     * A queued write; its work may be replaced until the writer takes it
+     */
+    private static class PendingWrite<T> {
+        private final String key;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private SqlWork<T> work;
+        private T result;
+        private Exception error;
+
+        PendingWrite(String key, SqlWork<T> work) {
+            this.key = key;
+            this.work = work;
+        }
+
+        void run(DatabaseManager dbManager) {
+            try {
+                result = dbManager.inTransaction(work);
+            } catch (SQLException | RuntimeException e) {
+                error = e;
+            }
+        }
+
+        void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+
+    private final DatabaseManager dbManager;
+    private final BlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+    // Queued writes that later writes with the same key can still replace
+    private final Map<String, PendingWrite<?>> pendingByKey = new HashMap<>();
+    // Copies written for new groups, by the caller's group; weak so they go with the group
+    private final Map<ScriptGroup, ScriptGroup> unsavedGroups = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Thread writer;
+    private final ExecutorService readExecutor;
+    private volatile boolean closed;
+
+    private PersistenceService() {
+        this.dbManager = DatabaseManager.getInstance();
+        this.writer = new Thread(this::writeLoop, "autoshell-persistence");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        this.readExecutor = Executors.newFixedThreadPool(READ_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "autoshell-persistence-read");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static synchronized PersistenceService getInstance() {
+        if (instance == null) {
+            instance = new PersistenceService();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues a write
+     * @param key Identifies what the write changes; a queued write with the same key is
+     *            replaced and its future completes with this write's result. Null to never coalesce
+     * @param work The write, run on the writer connection
+     * @return Completes on the writer thread once the write is committed, or with its error
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(String key, SqlWork<T> work) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Persistence service is shut down"));
+        }
+        synchronized (pendingByKey) {
+            if (key != null) {
+                PendingWrite<T> pending = (PendingWrite<T>) pendingByKey.get(key);
+                if (pending != null) {
+                    pending.work = work;
+                    return pending.future;
+                }
+            }
+            PendingWrite<T> write = new PendingWrite<>(key, work);
+            if (key != null) {
+                pendingByKey.put(key, write);
+            }
+            queue.add(write);
+            return write.future;
+        }
+    }
+
+    /**
+     * Runs a read on a background thread
+     * @return Completes with the result, or with the error the read threw
+     */
+    public <T> CompletableFuture<T> query(SqlWork<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return work.run();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            }
+        }, readExecutor);
+    }
+
+    public CompletableFuture<DatabaseManager.ReconcileResult> syncScripts(Path root, Collection<Script> scripts) {
+        return submit("sync:" + root, () -> dbManager.syncScripts(root, scripts));
+    }
+
+    /**
+     * Stores a group. The writer works on a copy and never touches the caller's group,
+     * which usually belongs to the UI; the caller sets a new group's id from the result
+     * on its own thread. Writes queued for the group before then use the copy's id.
+     * @return Completes with the group's id once the write is committed
+     */
+    public CompletableFuture<Long> saveGroup(ScriptGroup group) {
+        ScriptGroup copy = new ScriptGroup(group.getName());
+        copy.setId(group.getId());
+        copy.setDescription(group.getDescription());
+        copy.setCreatedAt(group.getCreatedAt());
+        copy.setType(group.getType());
+        if (group.getId() == null) {
+            unsavedGroups.put(group, copy);
+        }
+        return submit(null, () -> {
+            dbManager.saveGroup(copy);
+            return copy.getId();
+        });
+    }
+
+    /**
+     * Adds a script to a group; can be queued right after saving a new group
+     */
+    public CompletableFuture<Void> addScriptToGroup(ScriptGroup group, String scriptPath) {
+        Long id = group.getId();
+        ScriptGroup unsaved = unsavedGroups.get(group);
+        return submit(id == null ? null : "member:" + id + ":" + scriptPath, () -> {
+            dbManager.addScriptToGroup(savedId(group, id, unsaved), scriptPath);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> removeGroup(ScriptGroup group) {
+        Long id = group.getId();
+        ScriptGroup unsaved = unsavedGroups.get(group);
+        return submit(id == null ? null : "group:" + id, () -> {
+            dbManager.removeGroup(savedId(group, id, unsaved));
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> saveResourceLimits(String scope, String scopeKey, ResourceLimits limits) {
+        return submit("limits:" + scope + ":" + scopeKey, () -> {
+            dbManager.saveResourceLimits(scope, scopeKey, limits);
+            return null;
+        });
+    }
+
+    /**
+     * Writes everything queued so far and stops the writer; later writes fail
+     */
+    public void shutdown() {
+        CompletableFuture<Void> flushed = submit(null, () -> null);
+        closed = true;
+        try {
+            flushed.get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            System.err.println("Timed out writing pending changes to the database");
+        } catch (Exception e) {
+            System.err.println("Failed to write pending changes: " + e.getMessage());
+        }
+        writer.interrupt();
+        readExecutor.shutdownNow();
+    }
+
+    /**
+     * Runs on the writer: the id the caller saw, else the id of the copy saved for a new
+     * group, which only the writer writes
+     */
+    private static Long savedId(ScriptGroup group, Long id, ScriptGroup unsaved) throws SQLException {
+        Long savedId = id != null ? id : unsaved != null ? unsaved.getId() : null;
+        if (savedId == null) {
+            throw new SQLException("Group was not saved: " + group.getName());
+        }
+        return savedId;
+    }
+
+    private void writeLoop() {
+        List<PendingWrite<?>> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            // From here on the writes can no longer be replaced
+            synchronized (pendingByKey) {
+                for (PendingWrite<?> write : batch) {
+                    if (write.key != null) {
+                        pendingByKey.remove(write.key, write);
+                    }
+                }
+            }
+            try {
+                dbManager.inTransaction(() -> {
+                    batch.forEach(write -> write.run(dbManager));
+                    return null;
+                });
+                batch.forEach(PendingWrite::complete);
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Failed to commit " + batch.size() + " database writes: " + e.getMessage());
+                batch.forEach(write -> write.future.completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+}
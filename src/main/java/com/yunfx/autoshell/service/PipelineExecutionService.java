@@ -0,0 +1,176 @@
+package com.yunfx.autoshell.service;
+
+import com.yunfx.autoshell.database.DatabaseManager;
+import com.yunfx.autoshell.model.ResourceLimits;
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.service.ScriptExecutionService.ExecutionResult;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the members of a pipeline group connected by OS pipes: each stage's
+ * stdout feeds the next stage's stdin through {@link ProcessBuilder#startPipeline},
+ * so data never passes through the JVM. Each stage's stderr goes to its own log
+ * file and the last stage's stdout to the pipeline's output log.
+ */
+public class PipelineExecutionService {
+    private static final int FAILURE_TAIL_BYTES = 4096;
+    private static final File DEV_NULL = new File("/dev/null");
+
+    private final ScriptAnalysisService analysisService;
+    private final SudoPasswordManager sudoManager;
+    private final RunLogStore logStore;
+    private final ResourceLimiter resourceLimiter;
+
+    public PipelineExecutionService() {
+        this.analysisService = new ScriptAnalysisService();
+        this.sudoManager = SudoPasswordManager.getInstance();
+        this.logStore = RunLogStore.getInstance();
+        this.resourceLimiter = ResourceLimiter.getInstance();
+    }
+
+    /**
+     * Result of a whole pipeline run
+     */
+    public static class PipelineResult {
+        private final List<Script> stages;
+        private final List<ExecutionResult> stageResults;
+        private final Path outputLog;
+        private final long executionTimeMs;
+        private final String error;
+
+        public PipelineResult(List<Script> stages, List<ExecutionResult> stageResults, Path outputLog,
+                              long executionTimeMs, String error) {
+            this.stages = stages;
+            this.stageResults = stageResults;
+            this.outputLog = outputLog;
+            this.executionTimeMs = executionTimeMs;
+            this.error = error;
+        }
+
+        public List<Script> getStages() { return stages; }
+        public List<ExecutionResult> getStageResults() { return stageResults; }
+        public Path getOutputLog() { return outputLog; }
+        public long getExecutionTimeMs() { return executionTimeMs; }
+        public String getError() { return error; }
+
+        /**
+         * A pipeline succeeds only if every stage exits with status 0, like bash's pipefail
+         */
+        public boolean isSuccess() {
+            return error == null && !stageResults.isEmpty()
+                && stageResults.stream().allMatch(ExecutionResult::isSuccess);
+        }
+    }
+
+    /**
+     * Runs scripts as one pipeline, in the given order
+     * @param pipelineName Name used for the output log
+     * @param stages The scripts, first stage first
+     * @return Per-stage results plus the log holding the final stage's output
+     */
+    public PipelineResult executePipeline(String pipelineName, List<Script> stages) {
+        return executePipeline(pipelineName, stages, null);
+    }
+
+    /**
+     * Runs scripts as one pipeline, applying a group's resource limits to stages without their own
+     * @param groupLimits Limits of the pipeline group, or null
+     */
+    public PipelineResult executePipeline(String pipelineName, List<Script> stages, ResourceLimits groupLimits) {
+        long startTime = System.currentTimeMillis();
+        List<ExecutionResult> stageResults = new ArrayList<>();
+        List<Path> stderrLogs = new ArrayList<>();
+        Path outputLog = null;
+
+        try {
+            for (Script stage : stages) {
+                Path scriptPath = stage.getFilePath();
+                if (!scriptPath.toFile().exists()) {
+                    return new PipelineResult(stages, stageResults, null, 0, "Script file not found: " + scriptPath);
+                }
+                if (!scriptPath.toFile().canExecute()) {
+                    return new PipelineResult(stages, stageResults, null, 0, "Script is not executable: " + scriptPath);
+                }
+            }
+
+            // Stages cannot read a password from stdin, so sudo is authenticated once up front
+            boolean anySudo = stages.stream().anyMatch(analysisService::requiresSudo);
+            if (anySudo && sudoManager.hasValidPassword() && !sudoManager.refreshTimestamp()) {
+                return new PipelineResult(stages, stageResults, null, 0, "Failed to authenticate with sudo");
+            }
+
+            outputLog = logStore.createLogFile(pipelineName + "-pipeline");
+            List<ProcessBuilder> builders = new ArrayList<>();
+            List<ResourceLimits> stageLimits = new ArrayList<>();
+            for (int i = 0; i < stages.size(); i++) {
+                Script stage = stages.get(i);
+                Path scriptPath = stage.getFilePath();
+
+                List<String> command = analysisService.requiresSudo(stage)
+                    ? List.of("sudo", "-n", scriptPath.toString())
+                    : List.of(scriptPath.toString());
+                ResourceLimits limits = resourceLimiter.limitsFor(stage, groupLimits);
+                stageLimits.add(limits);
+                ProcessBuilder builder = new ProcessBuilder(resourceLimiter.wrap(command, limits));
+                builder.directory(scriptPath.getParent().toFile());
+
+                Path stderrLog = logStore.createLogFile(stage.getName() + "-stderr");
+                stderrLogs.add(stderrLog);
+                builder.redirectError(ProcessBuilder.Redirect.appendTo(stderrLog.toFile()));
+
+                if (i == 0) {
+                    builder.redirectInput(ProcessBuilder.Redirect.from(DEV_NULL));
+                }
+                if (i == stages.size() - 1) {
+                    builder.redirectOutput(ProcessBuilder.Redirect.appendTo(outputLog.toFile()));
+                }
+                builders.add(builder);
+            }
+
+            LocalDateTime startedAt = LocalDateTime.now();
+            long pipelineStart = System.currentTimeMillis();
+            List<Process> processes = ProcessBuilder.startPipeline(builders);
+
+            // Each stage's end time is taken when that process exits, not when the pipeline does
+            List<CompletableFuture<Long>> exitTimes = new ArrayList<>();
+            for (Process process : processes) {
+                exitTimes.add(process.onExit().thenApply(exited -> System.currentTimeMillis()));
+            }
+
+            DatabaseManager dbManager = DatabaseManager.getInstance();
+            for (int i = 0; i < processes.size(); i++) {
+                Process process = processes.get(i);
+                int exitCode = process.waitFor();
+                long duration = exitTimes.get(i).join() - pipelineStart;
+                boolean success = exitCode == 0;
+                String error = success ? "" : logStore.tail(stderrLogs.get(i), FAILURE_TAIL_BYTES);
+                ExecutionResult stageResult = new ExecutionResult(success, "", error, exitCode, duration, stderrLogs.get(i))
+                    .withLimitViolation(resourceLimiter.describeViolation(exitCode, stageLimits.get(i)));
+                stageResults.add(stageResult);
+
+                try {
+                    dbManager.recordRun(stages.get(i).getFilePath().toString(), startedAt, duration, exitCode, success,
+                        null, stageResult.getLimitViolation());
+                } catch (SQLException e) {
+                    System.err.println("Failed to record run of " + stages.get(i).getName() + ": " + e.getMessage());
+                }
+            }
+
+            return new PipelineResult(stages, stageResults, outputLog, System.currentTimeMillis() - startTime, null);
+
+        } catch (Exception e) {
+            return new PipelineResult(stages, stageResults, outputLog, System.currentTimeMillis() - startTime,
+                "Failed to execute pipeline: " + e.getMessage());
+        } finally {
+            logStore.release(outputLog);
+            stderrLogs.forEach(logStore::release);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.yunfx.autoshell.service;
+
+import com.yunfx.autoshell.database.DatabaseManager;
+import com.yunfx.autoshell.model.Script;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks the syntax of a group's scripts before any of them runs: every script
+ * with "bash -n" in parallel, and all of them with a single shellcheck call
+ * when shellcheck is installed. Results are cached by content hash, so
+ * unchanged scripts are never checked twice.
+ */
+public class PreflightService {
+    private static final long CHECK_TIMEOUT_SECONDS = 30;
+
+    // shellcheck -f gcc: file:line:column: severity: message [SCxxxx]
+    private static final Pattern SHELLCHECK_LINE = Pattern.compile("^(.+?):(\\d+):(\\d+): (\\w+): (.*)$");
+    private static final Pattern SHELL_SHEBANG = Pattern.compile("^#!\\s*\\S*/(env\\s+)?(sh|bash|dash)\\b.*");
+
+    /**
+     * A problem found in one script
+     */
+    public static class Issue {
+        private final Script script;
+        private final String message;
+
+        public Issue(Script script, String message) {
+            this.script = script;
+            this.message = message;
+        }
+
+        public Script getScript() { return script; }
+        public String getMessage() { return message; }
+    }
+
+    /**
+     * Outcome of checking a set of scripts
+     */
+    public static class PreflightResult {
+        private final List<Issue> issues;
+        private final int checkedCount;
+        private final int cachedCount;
+
+        public PreflightResult(List<Issue> issues, int checkedCount, int cachedCount) {
+            this.issues = issues;
+            this.checkedCount = checkedCount;
+            this.cachedCount = cachedCount;
+        }
+
+        public List<Issue> getIssues() { return issues; }
+        public int getCheckedCount() { return checkedCount; }
+        public int getCachedCount() { return cachedCount; }
+        public boolean isPassed() { return issues.isEmpty(); }
+
+        /**
+         * Formats the issues for a dialog or the console, one script per paragraph
+         */
+        public String describeIssues() {
+            StringBuilder description = new StringBuilder();
+            for (Issue issue : issues) {
+                if (description.length() > 0) {
+                    description.append("\n\n");
+                }
+                description.append(issue.getScript().getName()).append(":\n").append(issue.getMessage());
+            }
+            return description.toString();
+        }
+    }
+
+    /**
+     * Checks scripts for syntax errors
+     * @param scripts The scripts about to run
+     * @return The problems found; scripts that are not shell scripts are not checked
+     */
+    public PreflightResult check(List<Script> scripts) {
+        Optional<Path> shellcheck = BinaryLocator.find("shellcheck");
+        String checker = shellcheck.isPresent() ? "bash-n+shellcheck" : "bash-n";
+
+        // Cache keys cover the content and the checks performed, so installing shellcheck rechecks everything
+        Map<Script, String> keysByScript = new LinkedHashMap<>();
+        List<Issue> issues = new ArrayList<>();
+        for (Script script : scripts) {
+            try {
+                String content = Files.readString(script.getFilePath(), StandardCharsets.UTF_8);
+                if (isShellScript(content)) {
+                    keysByScript.put(script, ContentHasher.sha256Hex(checker + "\0" + content));
+                }
+            } catch (IOException e) {
+                issues.add(new Issue(script, "Cannot read script: " + e.getMessage()));
+            }
+        }
+
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        Map<String, String> cached;
+        try {
+            cached = dbManager.getPreflightResults(new HashSet<>(keysByScript.values()));
+        } catch (SQLException e) {
+            System.err.println("Failed to read pre-flight cache: " + e.getMessage());
+            cached = Collections.emptyMap();
+        }
+
+        Map<String, Script> unchecked = new LinkedHashMap<>();
+        for (Map.Entry<Script, String> entry : keysByScript.entrySet()) {
+            if (!cached.containsKey(entry.getValue())) {
+                unchecked.putIfAbsent(entry.getValue(), entry.getKey()); // Identical scripts are checked once
+            }
+        }
+
+        // Checks that timed out or failed to run are reported but not cached, so they run again next time
+        Set<String> incomplete = new HashSet<>();
+        Map<String, String> fresh = unchecked.isEmpty()
+            ? Collections.emptyMap()
+            : runChecks(unchecked, shellcheck.orElse(null), incomplete);
+        Map<String, String> definitive = new HashMap<>(fresh);
+        definitive.keySet().removeAll(incomplete);
+        try {
+            dbManager.savePreflightResults(definitive);
+        } catch (SQLException e) {
+            System.err.println("Failed to save pre-flight results: " + e.getMessage());
+        }
+
+        for (Map.Entry<Script, String> entry : keysByScript.entrySet()) {
+            String message = fresh.containsKey(entry.getValue()) ? fresh.get(entry.getValue()) : cached.get(entry.getValue());
+            if (message != null && !message.isEmpty()) {
+                issues.add(new Issue(entry.getKey(), message));
+            }
+        }
+        return new PreflightResult(issues, unchecked.size(), keysByScript.size() - unchecked.size());
+    }
+
+    /**
+     * @param incomplete Receives the keys of scripts whose checks did not all complete
+     */
+    private Map<String, String> runChecks(Map<String, Script> unchecked, Path shellcheck, Set<String> incomplete) {
+        int threads = Math.min(unchecked.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Map<String, Future<String>> syntaxChecks = new LinkedHashMap<>();
+            for (Map.Entry<String, Script> entry : unchecked.entrySet()) {
+                syntaxChecks.put(entry.getKey(), executor.submit(() -> runBashSyntaxCheck(entry.getValue().getFilePath())));
+            }
+
+            // One shellcheck process for all scripts while bash -n runs
+            Map<Path, String> lintResults = shellcheck == null
+                ? Collections.emptyMap()
+                : runShellcheck(shellcheck, unchecked.values());
+            if (lintResults == null) {
+                incomplete.addAll(unchecked.keySet());
+                lintResults = Collections.emptyMap();
+            }
+
+            Map<String, String> results = new HashMap<>();
+            for (Map.Entry<String, Future<String>> entry : syntaxChecks.entrySet()) {
+                StringBuilder message = new StringBuilder();
+                try {
+                    message.append(entry.getValue().get());
+                } catch (ExecutionException e) {
+                    incomplete.add(entry.getKey());
+                    message.append("bash -n failed: ").append(e.getCause().getMessage());
+                } catch (Exception e) {
+                    incomplete.add(entry.getKey());
+                    message.append("bash -n failed: ").append(e.getMessage());
+                }
+                String lint = lintResults.get(unchecked.get(entry.getKey()).getFilePath());
+                if (lint != null) {
+                    if (message.length() > 0) {
+                        message.append('\n');
+                    }
+                    message.append(lint);
+                }
+                results.put(entry.getKey(), message.toString().strip());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String runBashSyntaxCheck(Path scriptPath) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder("bash", "-n", scriptPath.toString())
+            .redirectErrorStream(true)
+            .redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")))
+            .start();
+        String output = awaitOutput(process, "bash -n");
+        return process.exitValue() == 0 ? "" : output.strip();
+    }
+
+    /**
+     * Waits for a check to exit and returns its output. The output is read on another
+     * thread, so a check that hangs is killed after the timeout instead of blocking
+     * @throws IOException If the check timed out or its output could not be read
+     */
+    private static String awaitOutput(Process process, String name) throws IOException, InterruptedException {
+        FutureTask<String> output = new FutureTask<>(() -> new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        Thread reader = new Thread(output, "autoshell-preflight-output");
+        reader.setDaemon(true);
+        reader.start();
+        if (!process.waitFor(CHECK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IOException(name + " timed out");
+        }
+        try {
+            return output.get(CHECK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Cannot read the output of " + name, e);
+        }
+    }
+
+    /**
+     * @return Messages by script path, or null if shellcheck did not complete
+     */
+    private Map<Path, String> runShellcheck(Path shellcheck, Iterable<Script> scripts) {
+        List<String> command = new ArrayList<>(List.of(shellcheck.toString(), "-S", "error", "-f", "gcc", "-e", "SC2148"));
+        for (Script script : scripts) {
+            command.add(script.getFilePath().toString());
+        }
+
+        Map<Path, StringBuilder> messages = new HashMap<>();
+        try {
+            Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            String output = awaitOutput(process, "shellcheck");
+            for (String line : output.split("\n")) {
+                Matcher matcher = SHELLCHECK_LINE.matcher(line);
+                if (matcher.matches()) {
+                    messages.computeIfAbsent(Path.of(matcher.group(1)), key -> new StringBuilder())
+                        .append("line ").append(matcher.group(2)).append(": ").append(matcher.group(5)).append('\n');
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            System.err.println("shellcheck failed; relying on bash -n only: " + e.getMessage());
+            return null;
+        }
+
+        Map<Path, String> results = new HashMap<>();
+        messages.forEach((path, message) -> results.put(path, message.toString().strip()));
+        return results;
+    }
+
+    private static boolean isShellScript(String content) {
+        if (!content.startsWith("#!")) {
+            return true; // No interpreter line: run by the default shell
+        }
+        int lineEnd = content.indexOf('\n');
+        String shebang = lineEnd < 0 ? content : content.substring(0, lineEnd);
+        return SHELL_SHEBANG.matcher(shebang.strip()).matches();
+    }
+}
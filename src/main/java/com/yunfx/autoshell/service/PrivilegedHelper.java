@@ -0,0 +1,221 @@
+package com.yunfx.autoshell.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A root shell started once through "sudo -S" that runs privileged commands on
+ * request, so sudo authenticates once per session instead of once per script.
+ * Requests and replies are tab separated lines over the helper's stdin and
+ * stdout; command output goes straight to files named in the request.
+ */
+public class PrivilegedHelper {
+    private static final long STARTUP_TIMEOUT_SECONDS = 15;
+    private static final Path WORK_DIR = Paths.get(System.getProperty("user.home"), ".local", "share", "yunfx-autoshell", "helper");
+
+    // Request: RUN <id> <dir> <stdout file> <stderr file> <argv...>; reply: DONE <id> <exit code>.
+    // Every request runs in the background so group runs can execute in parallel.
+    // The helper exits, after its jobs finish, when its stdin is closed.
+    private static final String HELPER_SCRIPT = String.join("\n",
+        "printf 'READY\\n'",
+        "while IFS=$'\\t' read -r -a req; do",
+        "  case \"${req[0]}\" in",
+        "    RUN)",
+        "      { ( cd -- \"${req[2]}\" && exec \"${req[@]:5}\" ) </dev/null >>\"${req[3]}\" 2>>\"${req[4]}\";",
+        "        printf 'DONE\\t%s\\t%s\\n' \"${req[1]}\" \"$?\"; } &",
+        "      ;;",
+        "    EXIT) break ;;",
+        "  esac",
+        "done",
+        "wait");
+
+    private static PrivilegedHelper instance;
+
+    private final SudoPasswordManager sudoManager;
+    private final AtomicLong nextRequestId = new AtomicLong(1);
+    private Process process;
+    private Writer requests;
+    private Map<Long, CompletableFuture<Integer>> pending;
+
+    private PrivilegedHelper() {
+        this.sudoManager = SudoPasswordManager.getInstance();
+    }
+
+    public static synchronized PrivilegedHelper getInstance() {
+        if (instance == null) {
+            instance = new PrivilegedHelper();
+        }
+        return instance;
+    }
+
+    /**
+     * @return A directory for output files; it lives in the user's home, since root may not
+     *         open files of other users in sticky directories such as /tmp
+     */
+    public Path getWorkDirectory() throws IOException {
+        return Files.createDirectories(WORK_DIR);
+    }
+
+    /**
+     * Runs a command as root
+     * @param command The argv to run
+     * @param workingDirectory Directory the command starts in
+     * @param stdout File the command's stdout is appended to
+     * @param stderr File the command's stderr is appended to; may be the same as stdout
+     * @return A future completed with the command's exit code
+     * @throws IOException if the helper could not be started, e.g. because sudo rejected the password
+     */
+    public CompletableFuture<Integer> run(List<String> command, Path workingDirectory, Path stdout, Path stderr) throws IOException {
+        StringBuilder request = new StringBuilder();
+        long id = nextRequestId.getAndIncrement();
+        request.append("RUN\t").append(id);
+        for (String field : List.of(workingDirectory.toString(), stdout.toString(), stderr.toString())) {
+            request.append('\t').append(checkField(field));
+        }
+        for (String argument : command) {
+            request.append('\t').append(checkField(argument));
+        }
+
+        CompletableFuture<Integer> exitCode = new CompletableFuture<>();
+        synchronized (this) {
+            ensureStarted();
+            pending.put(id, exitCode);
+            try {
+                requests.write(request.append('\n').toString());
+                requests.flush();
+            } catch (IOException e) {
+                pending.remove(id);
+                stop();
+                throw e;
+            }
+        }
+        return exitCode;
+    }
+
+    /**
+     * @return true while the helper process is running
+     */
+    public synchronized boolean isRunning() {
+        return process != null && process.isAlive();
+    }
+
+    /**
+     * Stops the helper; running commands finish first. The next request starts a new helper.
+     */
+    public synchronized void stop() {
+        if (process == null) {
+            return;
+        }
+        try {
+            requests.write("EXIT\n");
+            requests.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+        process = null;
+        requests = null;
+        pending = null;
+    }
+
+    private void ensureStarted() throws IOException {
+        if (isRunning()) {
+            return;
+        }
+        // Without a password (cron, CI) sudo must work non-interactively, e.g. through NOPASSWD
+        boolean withPassword = sudoManager.hasValidPassword();
+        List<String> sudo = withPassword ? List.of("sudo", "-S", "-p", "") : List.of("sudo", "-n");
+        List<String> command = new ArrayList<>(sudo);
+        command.addAll(List.of("bash", "-c", HELPER_SCRIPT, "autoshell-helper"));
+
+        Process started = new ProcessBuilder(command)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        Writer writer = new OutputStreamWriter(started.getOutputStream(), StandardCharsets.UTF_8);
+        BufferedReader replies = new BufferedReader(new InputStreamReader(started.getInputStream(), StandardCharsets.UTF_8));
+
+        // sudo reads the password line by line, so the rest of stdin belongs to the helper
+        if (withPassword) {
+            writer.write(sudoManager.getPasswordInput(true));
+            writer.flush();
+        }
+
+        CompletableFuture<String> ready = CompletableFuture.supplyAsync(() -> {
+            try {
+                return replies.readLine();
+            } catch (IOException e) {
+                return null;
+            }
+        });
+        String firstLine;
+        try {
+            firstLine = ready.get(STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            firstLine = null;
+        }
+        if (!"READY".equals(firstLine)) {
+            started.destroyForcibly();
+            throw new IOException("Privileged helper failed to start; sudo rejected the password or timed out");
+        }
+
+        Map<Long, CompletableFuture<Integer>> startedPending = new ConcurrentHashMap<>();
+        process = started;
+        requests = writer;
+        pending = startedPending;
+        System.out.println("Privileged helper started");
+
+        Thread replyThread = new Thread(() -> readReplies(started, replies, startedPending), "autoshell-privileged-helper");
+        replyThread.setDaemon(true);
+        replyThread.start();
+    }
+
+    private void readReplies(Process helper, BufferedReader replies, Map<Long, CompletableFuture<Integer>> helperPending) {
+        try {
+            String line;
+            while ((line = replies.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length == 3 && fields[0].equals("DONE")) {
+                    CompletableFuture<Integer> exitCode = helperPending.remove(Long.parseLong(fields[1]));
+                    if (exitCode != null) {
+                        exitCode.complete(Integer.parseInt(fields[2]));
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Privileged helper reply failed: " + e.getMessage());
+        }
+
+        // The helper is gone; requests it accepted will never be answered
+        synchronized (this) {
+            if (process == helper) {
+                process = null;
+                requests = null;
+                pending = null;
+            }
+        }
+        helperPending.values().forEach(exitCode ->
+            exitCode.completeExceptionally(new IOException("Privileged helper exited")));
+        helperPending.clear();
+        System.out.println("Privileged helper stopped");
+    }
+
+    private static String checkField(String field) throws IOException {
+        if (field.isEmpty() || field.indexOf('\t') >= 0 || field.indexOf('\n') >= 0) {
+            throw new IOException("Cannot pass empty values or values containing tabs or newlines to the privileged helper: " + field);
+        }
+        return field;
+    }
+}
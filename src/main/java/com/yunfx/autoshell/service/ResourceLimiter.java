@@ -0,0 +1,220 @@
+package com.yunfx.autoshell.service;
+
+import com.yunfx.autoshell.database.DatabaseManager;
+import com.yunfx.autoshell.model.ResourceLimits;
+import com.yunfx.autoshell.model.Script;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Applies {@link ResourceLimits} by prefixing a command with wrapper programs:
+ * prlimit (or a ulimit shell when prlimit is missing) for CPU time, address
+ * space and open files, nice/ionice for scheduling, and a transient systemd
+ * scope for cgroup v2 memory and CPU quotas when the user has a delegated cgroup.
+ */
+public class ResourceLimiter {
+    private static final int SIGNAL_EXIT_BASE = 128;
+    private static final int SIGKILL = 9;
+    private static final int SIGXCPU = 24;
+
+    // The ulimit fallback only ever receives numbers from the limits
+    private static final String ULIMIT_SCRIPT_NAME = "autoshell-limits";
+
+    private static ResourceLimiter instance;
+
+    private final Optional<Path> prlimit;
+    private final Optional<Path> systemdRun;
+    private final boolean cgroupDelegated;
+    private boolean cgroupWarningShown;
+
+    private ResourceLimiter() {
+        this.prlimit = BinaryLocator.find("prlimit");
+        this.systemdRun = BinaryLocator.find("systemd-run");
+        this.cgroupDelegated = systemdRun.isPresent() && detectCgroupDelegation();
+    }
+
+    public static synchronized ResourceLimiter getInstance() {
+        if (instance == null) {
+            instance = new ResourceLimiter();
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if memory and CPU quota limits can be enforced through the user's cgroup
+     */
+    public boolean isCgroupDelegated() {
+        return cgroupDelegated;
+    }
+
+    /**
+     * Resolves the limits for one script run: the script's own limits, with the group's as defaults
+     * @param script The script about to run
+     * @param groupLimits Limits of the group the script runs in, or null
+     * @return The effective limits, possibly empty
+     */
+    public ResourceLimits limitsFor(Script script, ResourceLimits groupLimits) {
+        try {
+            ResourceLimits scriptLimits = DatabaseManager.getInstance()
+                .getResourceLimits(ResourceLimits.SCOPE_SCRIPT, script.getFilePath().toString());
+            return (scriptLimits == null ? new ResourceLimits() : scriptLimits).withDefaults(groupLimits);
+        } catch (SQLException e) {
+            System.err.println("Failed to load resource limits of " + script.getName() + ": " + e.getMessage());
+            return new ResourceLimits().withDefaults(groupLimits);
+        }
+    }
+
+    /**
+     * Loads the limits of a group
+     * @return The limits, or null if the group has none
+     */
+    public ResourceLimits groupLimits(Long groupId) {
+        try {
+            return DatabaseManager.getInstance().getResourceLimits(ResourceLimits.SCOPE_GROUP, String.valueOf(groupId));
+        } catch (SQLException e) {
+            System.err.println("Failed to load group resource limits: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Wraps a command so it runs under the given limits
+     * @param command The command to run
+     * @param limits The limits to apply; null or empty limits return the command unchanged
+     * @return The wrapped command
+     */
+    public List<String> wrap(List<String> command, ResourceLimits limits) {
+        return wrap(command, limits, false);
+    }
+
+    /**
+     * Wraps a command so it runs under the given limits
+     * @param command The command to run
+     * @param limits The limits to apply; null or empty limits return the command unchanged
+     * @param asRoot true if the wrapped command is started by root, which uses the system manager's scopes
+     * @return The wrapped command
+     */
+    public List<String> wrap(List<String> command, ResourceLimits limits, boolean asRoot) {
+        if (limits == null || limits.isEmpty()) {
+            return command;
+        }
+
+        List<String> wrapped = new ArrayList<>();
+
+        // cgroup v2 controllers through a transient scope; the command keeps its stdio and exit code
+        boolean wantsCgroup = limits.getMemoryMb() != null || limits.getCpuQuotaPercent() != null;
+        if (wantsCgroup && cgroupDelegated) {
+            wrapped.add(systemdRun.get().toString());
+            if (!asRoot) {
+                wrapped.add("--user");
+            }
+            wrapped.addAll(List.of("--scope", "--quiet", "--collect"));
+            if (limits.getMemoryMb() != null) {
+                wrapped.add("-p");
+                wrapped.add("MemoryMax=" + limits.getMemoryMb() + "M");
+                wrapped.add("-p");
+                wrapped.add("MemorySwapMax=0");
+            }
+            if (limits.getCpuQuotaPercent() != null) {
+                wrapped.add("-p");
+                wrapped.add("CPUQuota=" + limits.getCpuQuotaPercent() + "%");
+            }
+            wrapped.add("--");
+        } else if (wantsCgroup) {
+            warnCgroupUnavailable();
+        }
+
+        // setrlimit-based limits
+        if (limits.getCpuSeconds() != null || limits.getAddressSpaceMb() != null || limits.getOpenFiles() != null) {
+            if (prlimit.isPresent()) {
+                wrapped.add(prlimit.get().toString());
+                if (limits.getCpuSeconds() != null) {
+                    wrapped.add("--cpu=" + limits.getCpuSeconds());
+                }
+                if (limits.getAddressSpaceMb() != null) {
+                    wrapped.add("--as=" + limits.getAddressSpaceMb() * 1024 * 1024);
+                }
+                if (limits.getOpenFiles() != null) {
+                    wrapped.add("--nofile=" + limits.getOpenFiles());
+                }
+                wrapped.add("--");
+            } else {
+                StringBuilder ulimits = new StringBuilder();
+                if (limits.getCpuSeconds() != null) {
+                    ulimits.append("ulimit -t ").append(limits.getCpuSeconds()).append(" && ");
+                }
+                if (limits.getAddressSpaceMb() != null) {
+                    ulimits.append("ulimit -v ").append(limits.getAddressSpaceMb() * 1024).append(" && ");
+                }
+                if (limits.getOpenFiles() != null) {
+                    ulimits.append("ulimit -n ").append(limits.getOpenFiles()).append(" && ");
+                }
+                wrapped.addAll(List.of("bash", "-c", ulimits + "exec \"$@\"", ULIMIT_SCRIPT_NAME));
+            }
+        }
+
+        // Scheduling priority
+        if (limits.getNiceLevel() != null) {
+            wrapped.addAll(List.of("nice", "-n", String.valueOf(limits.getNiceLevel())));
+        }
+        if (limits.getIoClass() != null) {
+            wrapped.addAll(List.of("ionice", "-c", ResourceLimits.IO_CLASS_IDLE.equals(limits.getIoClass()) ? "3" : "2"));
+        }
+
+        wrapped.addAll(command);
+        return wrapped;
+    }
+
+    /**
+     * Works out whether a run was stopped by one of its limits
+     * @param exitCode The process exit code; signals are reported as 128 + signal number
+     * @param limits The limits the run used
+     * @return A description of the violated limit, or null
+     */
+    public String describeViolation(int exitCode, ResourceLimits limits) {
+        if (limits == null || limits.isEmpty()) {
+            return null;
+        }
+        if (exitCode == SIGNAL_EXIT_BASE + SIGXCPU && limits.getCpuSeconds() != null) {
+            return "CPU time limit of " + limits.getCpuSeconds() + " s exceeded";
+        }
+        if (exitCode == SIGNAL_EXIT_BASE + SIGKILL) {
+            if (limits.getMemoryMb() != null && cgroupDelegated) {
+                return "Killed, most likely by the memory limit of " + limits.getMemoryMb() + " MB";
+            }
+            if (limits.getCpuSeconds() != null) {
+                return "Killed after exceeding the CPU time limit of " + limits.getCpuSeconds() + " s";
+            }
+        }
+        return null;
+    }
+
+    private synchronized void warnCgroupUnavailable() {
+        if (!cgroupWarningShown) {
+            cgroupWarningShown = true;
+            System.err.println("No delegated cgroup v2 hierarchy; memory and CPU quota limits are not applied");
+        }
+    }
+
+    private static boolean detectCgroupDelegation() {
+        Path root = Paths.get("/sys/fs/cgroup");
+        if (!Files.exists(root.resolve("cgroup.controllers"))) {
+            return false; // Not a cgroup v2 system
+        }
+        try {
+            int uid = (Integer) Files.getAttribute(Paths.get("/proc/self"), "unix:uid");
+            Path userService = root.resolve("user.slice/user-" + uid + ".slice/user@" + uid + ".service");
+            String controllers = Files.readString(userService.resolve("cgroup.controllers"));
+            return controllers.contains("memory") && controllers.contains("cpu");
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.yunfx.autoshell.service;
+
+import com.yunfx.autoshell.model.Script;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores per-run log files written directly by child processes and keeps the
+ * log directory compact by compressing old logs and enforcing retention.
+ */
+public class RunLogStore {
+    private static final Path LOG_DIR = Paths.get(System.getProperty("user.home"), ".local", "share", "yunfx-autoshell", "logs");
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private static final String LOG_SUFFIX = ".log";
+    private static final String COMPRESSED_SUFFIX = ".log.gz";
+
+    // Retention policy
+    private static final Duration COMPRESS_AFTER = Duration.ofHours(1);
+    private static final Duration MAX_AGE = Duration.ofDays(14);
+    private static final long MAX_TOTAL_BYTES = 256L * 1024 * 1024;
+    private static final long COMPACT_INTERVAL_MINUTES = 10;
+
+    private static RunLogStore instance;
+
+    // Logs being written, each with the channel holding its lock
+    private final Map<Path, FileChannel> activeLogs = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService compactor;
+
+    private RunLogStore() {
+        try {
+            Files.createDirectories(LOG_DIR);
+        } catch (IOException e) {
+            System.err.println("Failed to create log directory " + LOG_DIR + ": " + e.getMessage());
+        }
+
+        compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "autoshell-log-compactor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compact, 1, COMPACT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public static synchronized RunLogStore getInstance() {
+        if (instance == null) {
+            instance = new RunLogStore();
+        }
+        return instance;
+    }
+
+    public Path getLogDirectory() {
+        return LOG_DIR;
+    }
+
+    /**
+     * Creates a new, empty log file for one run of a script and locks it, so no
+     * compactor in any AutoShell process touches it until {@link #release(Path)} is called.
+     * @param script The script about to run
+     * @return Path of the log file the process should write to
+     */
+    public Path createLogFile(Script script) throws IOException {
+        return createLogFile(script.getName());
+    }
+
+    /**
+     * Creates a new, empty, active log file named after an arbitrary label
+     * @param label Prefix of the file name, e.g. a script or group name
+     * @return Path of the new log file
+     */
+    public Path createLogFile(String label) throws IOException {
+        Files.createDirectories(LOG_DIR);
+        String baseName = sanitize(label) + "-" + LocalDateTime.now().format(FILE_TIMESTAMP);
+        Path logFile = LOG_DIR.resolve(baseName + LOG_SUFFIX);
+        int suffix = 1;
+        while (Files.exists(logFile)) {
+            logFile = LOG_DIR.resolve(baseName + "-" + suffix++ + LOG_SUFFIX);
+        }
+        Files.createFile(logFile);
+        // An OS lock, unlike the set alone, is seen by the GUI, the CLI and the daemon alike
+        FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        activeLogs.put(logFile, channel);
+        return logFile;
+    }
+
+    /**
+     * Marks a log as finished so it becomes eligible for compression
+     * @param logFile The log file returned by {@link #createLogFile(Script)}
+     */
+    public void release(Path logFile) {
+        FileChannel channel = logFile == null ? null : activeLogs.remove(logFile);
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Failed to unlock " + logFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lists stored logs, newest first
+     * @return Plain and compressed log files in the log directory
+     */
+    public List<Path> listLogs() {
+        List<Path> logs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(LOG_DIR)) {
+            files.filter(RunLogStore::isLogFile).forEach(logs::add);
+        } catch (IOException e) {
+            System.err.println("Failed to list logs: " + e.getMessage());
+        }
+        logs.sort(Comparator.comparing(RunLogStore::lastModified).reversed());
+        return logs;
+    }
+
+    /**
+     * Reads the last part of a log. Plain logs are read through a memory-mapped
+     * view of the file's tail, so cost does not depend on the log size.
+     * @param logFile The log to read
+     * @param maxBytes Maximum number of bytes to return
+     * @return The tail of the log, starting at a line boundary when possible
+     */
+    public String tail(Path logFile, int maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            return "";
+        }
+        // One byte more than asked for tells whether the log was cut, and whether
+        // the cut fell right after a line end
+        int window = maxBytes + 1;
+        byte[] bytes;
+        if (logFile.toString().endsWith(COMPRESSED_SUFFIX)) {
+            bytes = tailCompressed(logFile, window);
+        } else {
+            try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+                long size = channel.size();
+                int length = (int) Math.min(size, window);
+                if (length == 0) {
+                    return "";
+                }
+                MappedByteBuffer view = channel.map(FileChannel.MapMode.READ_ONLY, size - length, length);
+                bytes = new byte[length];
+                view.get(bytes);
+            }
+        }
+
+        if (bytes.length <= maxBytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        // Truncated: start after the first line end, unless the whole tail is one line
+        int start = 1;
+        for (int i = 0; i < bytes.length - 1; i++) {
+            if (bytes[i] == '\n') {
+                start = i + 1;
+                break;
+            }
+        }
+        return new String(bytes, start, bytes.length - start, StandardCharsets.UTF_8);
+    }
+
+    private byte[] tailCompressed(Path logFile, int maxBytes) throws IOException {
+        // Keep only the last maxBytes of the decompressed stream in a ring buffer
+        byte[] ring = new byte[maxBytes];
+        long total = 0;
+        byte[] chunk = new byte[8192];
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(logFile))) {
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    ring[(int) (total++ % maxBytes)] = chunk[i];
+                }
+            }
+        }
+
+        int length = (int) Math.min(total, maxBytes);
+        byte[] result = new byte[length];
+        int start = (int) (total % maxBytes);
+        if (total <= maxBytes) {
+            System.arraycopy(ring, 0, result, 0, length);
+        } else {
+            ByteBuffer.wrap(result).put(ring, start, maxBytes - start).put(ring, 0, start);
+        }
+        return result;
+    }
+
+    /**
+     * Compresses finished logs and removes logs that exceed the age or total size limits
+     */
+    public void compact() {
+        try {
+            Instant now = Instant.now();
+            for (Path log : listLogs()) {
+                if (activeLogs.containsKey(log)) {
+                    continue;
+                }
+                Instant modified = lastModified(log).toInstant();
+                if (Duration.between(modified, now).compareTo(MAX_AGE) > 0) {
+                    unlessWritten(log, () -> Files.deleteIfExists(log));
+                } else if (log.toString().endsWith(LOG_SUFFIX)
+                        && Duration.between(modified, now).compareTo(COMPRESS_AFTER) > 0) {
+                    unlessWritten(log, () -> compress(log));
+                }
+            }
+
+            // Enforce the total size cap, dropping the oldest logs first
+            long totalBytes = 0;
+            for (Path log : listLogs()) {
+                long size = Files.size(log);
+                totalBytes += size;
+                if (totalBytes > MAX_TOTAL_BYTES && !activeLogs.containsKey(log)
+                        && unlessWritten(log, () -> Files.deleteIfExists(log))) {
+                    totalBytes -= size;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Log compaction failed: " + e.getMessage());
+        }
+    }
+
+    private interface LogAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * Runs an action on a log unless a run in some AutoShell process still holds its lock.
+     * Compressed logs are never written, so they need no check.
+     * @return true if the action ran
+     */
+    private static boolean unlessWritten(Path log, LogAction action) throws IOException {
+        if (!log.toString().endsWith(LOG_SUFFIX)) {
+            action.run();
+            return true;
+        }
+        // Closing the channel releases the lock
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null; // Locked by this JVM
+            }
+            if (lock == null) {
+                return false;
+            }
+            action.run();
+            return true;
+        }
+    }
+
+    private void compress(Path log) throws IOException {
+        Path compressed = log.resolveSibling(log.getFileName() + ".gz");
+        FileTime modified = Files.getLastModifiedTime(log);
+        try (InputStream in = Files.newInputStream(log);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            in.transferTo(out);
+        }
+        // Keep the original timestamp so age-based retention still applies
+        Files.setLastModifiedTime(compressed, modified);
+        Files.delete(log);
+    }
+
+    public void shutdown() {
+        compactor.shutdownNow();
+    }
+
+    private static boolean isLogFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(LOG_SUFFIX) || name.endsWith(COMPRESSED_SUFFIX);
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String sanitize(String name) {
+        String cleaned = name == null ? "script" : name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return cleaned.isEmpty() ? "script" : cleaned;
+    }
+}
@@ -3,10 +3,17 @@ package com.yunfx.autoshell.service;
 import com.yunfx.autoshell.model.Script;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 public class ScriptAnalysisService {
     
+    // Analysis results shared by all instances: script path -> "mtime|size|result"
+    private static final Map<Path, String> ANALYSIS_CACHE = new ConcurrentHashMap<>();
+    
     // Regex patterns to detect sudo requirements
     private static final Pattern[] SUDO_PATTERNS = {
         // Direct sudo commands
@@ -64,6 +71,37 @@ public class ScriptAnalysisService {
      * @return true if the script likely needs sudo, false otherwise
      */
     public boolean requiresSudo(Script script) {
+        String stamp = fileStamp(script);
+        if (stamp == null) {
+            return analyzeContent(script);
+        }
+        
+        String cached = ANALYSIS_CACHE.get(script.getFilePath());
+        if (cached != null && cached.startsWith(stamp + "|")) {
+            return cached.endsWith("|true");
+        }
+        boolean result = analyzeContent(script);
+        ANALYSIS_CACHE.put(script.getFilePath(), stamp + "|" + result);
+        return result;
+    }
+    
+    /**
+     * Builds a stamp that changes whenever the script file is modified
+     * @return "mtime|size", or null if the file cannot be inspected
+     */
+    private String fileStamp(Script script) {
+        try {
+            if (script.getFilePath() == null) {
+                return null;
+            }
+            BasicFileAttributes attrs = Files.readAttributes(script.getFilePath(), BasicFileAttributes.class);
+            return attrs.lastModifiedTime().toMillis() + "|" + attrs.size();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private boolean analyzeContent(Script script) {
         try {
             String content = getScriptContent(script);
             if (content == null || content.trim().isEmpty()) {
@@ -51,6 +51,9 @@ public class ScriptDiscoveryService {
                 ZoneId.systemDefault()
             );
             script.setLastModified(lastModified);
+            if (attrs.fileKey() != null) {
+                script.setFileKey(attrs.fileKey().toString());
+            }
             
             // Read file content for analysis
             try {
@@ -118,6 +121,37 @@ public class ScriptDiscoveryService {
         return tags;
     }
     
+    /**
+     * Extracts paths declared in header comments such as "# inputs: config.yml, templates/"
+     * @param content The script content
+     * @param keyword "input" or "output"; the plural form is accepted as well
+     * @return Declared paths, relative to the script's directory unless absolute
+     */
+    public List<String> extractDeclaredPaths(String content, String keyword) {
+        List<String> paths = new ArrayList<>();
+        String[] lines = content.split("\n");
+        
+        for (String line : lines) {
+            line = line.trim();
+            if (!line.startsWith("#")) {
+                continue;
+            }
+            String declaration = line.substring(1).trim();
+            String lower = declaration.toLowerCase();
+            if (lower.startsWith(keyword + ":") || lower.startsWith(keyword + "s:")) {
+                String[] entries = declaration.substring(declaration.indexOf(':') + 1).split(",");
+                for (String entry : entries) {
+                    String cleanPath = entry.trim();
+                    if (!cleanPath.isEmpty() && !paths.contains(cleanPath)) {
+                        paths.add(cleanPath);
+                    }
+                }
+            }
+        }
+        
+        return paths;
+    }
+    
     public boolean isScriptExecutable(Path scriptPath) {
         return Files.exists(scriptPath) && Files.isExecutable(scriptPath);
     }
@@ -1,24 +1,47 @@
 package com.yunfx.autoshell.service;
 
+import com.yunfx.autoshell.database.DatabaseManager;
+import com.yunfx.autoshell.model.ResourceLimits;
 import com.yunfx.autoshell.model.Script;
 import com.yunfx.autoshell.model.ScriptGroup;
-import javafx.concurrent.Task;
-import javafx.concurrent.WorkerStateEvent;
-import javafx.event.EventHandler;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 public class ScriptExecutionService {
     private final ScriptAnalysisService analysisService;
     private final SudoPasswordManager sudoManager;
+    private final RunLogStore logStore;
+    private final TerminalLauncher terminalLauncher;
+    private final ScriptDiscoveryService discoveryService;
+    private final ResourceLimiter resourceLimiter;
+    private final PrivilegedHelper privilegedHelper;
+    
+    // Shell snippets run inside terminal windows; $1 is the script path
+    private static final String SUDO_PASSWORD_ENV = "AUTOSHELL_SUDO_PASSWORD";
+    private static final String TERMINAL_COMMAND = "\"$1\"; exec bash";
+    private static final String TERMINAL_SUDO_COMMAND =
+        "pw=\"$" + SUDO_PASSWORD_ENV + "\"; unset " + SUDO_PASSWORD_ENV + "; " +
+        "printf '%s\\n' \"$pw\" | sudo -S -p '' -v && unset pw && sudo \"$1\"; exec bash";
+    
+    // Bytes of a failed run's log included in the result's error text
+    private static final int FAILURE_TAIL_BYTES = 4096;
     
     public ScriptExecutionService() {
         this.analysisService = new ScriptAnalysisService();
         this.sudoManager = SudoPasswordManager.getInstance();
+        this.logStore = RunLogStore.getInstance();
+        this.terminalLauncher = TerminalLauncher.getInstance();
+        this.discoveryService = new ScriptDiscoveryService();
+        this.resourceLimiter = ResourceLimiter.getInstance();
+        this.privilegedHelper = PrivilegedHelper.getInstance();
     }
     
     public static class ExecutionResult {
@@ -27,13 +50,40 @@ public class ScriptExecutionService {
         private final String error;
         private final int exitCode;
         private final long executionTimeMs;
+        private final Path logFile;
+        private final boolean skipped;
+        private final String limitViolation;
         
         public ExecutionResult(boolean success, String output, String error, int exitCode, long executionTimeMs) {
+            this(success, output, error, exitCode, executionTimeMs, null);
+        }
+        
+        public ExecutionResult(boolean success, String output, String error, int exitCode, long executionTimeMs, Path logFile) {
+            this(success, output, error, exitCode, executionTimeMs, logFile, false);
+        }
+        
+        private ExecutionResult(boolean success, String output, String error, int exitCode, long executionTimeMs,
+                                Path logFile, boolean skipped) {
+            this(success, output, error, exitCode, executionTimeMs, logFile, skipped, null);
+        }
+        
+        private ExecutionResult(boolean success, String output, String error, int exitCode, long executionTimeMs,
+                                Path logFile, boolean skipped, String limitViolation) {
             this.success = success;
             this.output = output;
             this.error = error;
             this.exitCode = exitCode;
             this.executionTimeMs = executionTimeMs;
+            this.logFile = logFile;
+            this.skipped = skipped;
+            this.limitViolation = limitViolation;
+        }
+        
+        /**
+         * Result for a run that was skipped because its inputs did not change
+         */
+        public static ExecutionResult skipped(String reason) {
+            return new ExecutionResult(true, reason, "", 0, 0, null, true);
         }
         
         public boolean isSuccess() { return success; }
@@ -41,6 +91,17 @@ public class ScriptExecutionService {
         public String getError() { return error; }
         public int getExitCode() { return exitCode; }
         public long getExecutionTimeMs() { return executionTimeMs; }
+        public Path getLogFile() { return logFile; }
+        public boolean isSkipped() { return skipped; }
+        public String getLimitViolation() { return limitViolation; }
+        
+        /**
+         * Copy of this result noting the resource limit that stopped the run
+         */
+        public ExecutionResult withLimitViolation(String violation) {
+            String describedError = violation == null ? error : violation + "\n" + error;
+            return new ExecutionResult(success, output, describedError, exitCode, executionTimeMs, logFile, skipped, violation);
+        }
     }
     
     public CompletableFuture<ExecutionResult> executeScriptAsync(Script script) {
@@ -62,7 +123,8 @@ public class ScriptExecutionService {
                 return new ExecutionResult(false, "", "Script is not executable: " + scriptPath, -1, 0);
             }
             
-            ProcessBuilder processBuilder = new ProcessBuilder("bash", scriptPath.toString());
+            ProcessBuilder processBuilder = new ProcessBuilder(resourceLimiter.wrap(
+                List.of("bash", scriptPath.toString()), resourceLimiter.limitsFor(script, null)));
             processBuilder.directory(scriptPath.getParent().toFile());
             
             Process process = processBuilder.start();
@@ -105,65 +167,6 @@ public class ScriptExecutionService {
         }
     }
     
-    public Task<ExecutionResult> createExecutionTask(Script script) {
-        return new Task<ExecutionResult>() {
-            @Override
-            protected ExecutionResult call() throws Exception {
-                return executeScript(script);
-            }
-        };
-    }
-    
-    public void executeGroupSequentially(ScriptGroup group, 
-                                       EventHandler<WorkerStateEvent> onScriptComplete,
-                                       EventHandler<WorkerStateEvent> onGroupComplete) {
-        
-        Task<Void> groupTask = new Task<Void>() {
-            @Override
-            protected Void call() throws Exception {
-                List<Script> scripts = group.getScripts();
-                
-                for (int i = 0; i < scripts.size(); i++) {
-                    Script script = scripts.get(i);
-                    
-                    // Update progress
-                    updateProgress(i, scripts.size());
-                    updateMessage("Executing: " + script.getName());
-                    
-                    // Execute script
-                    ExecutionResult result = executeScript(script);
-                    
-                    // Notify completion
-                    if (onScriptComplete != null) {
-                        javafx.application.Platform.runLater(() -> {
-                            onScriptComplete.handle(new WorkerStateEvent(this, null));
-                        });
-                    }
-                    
-                    // If script failed and we want to stop on first failure
-                    if (!result.isSuccess()) {
-                        updateMessage("Script failed: " + script.getName());
-                        break;
-                    }
-                }
-                
-                updateProgress(scripts.size(), scripts.size());
-                updateMessage("Group execution completed");
-                
-                return null;
-            }
-        };
-        
-        if (onGroupComplete != null) {
-            groupTask.setOnSucceeded(onGroupComplete);
-            groupTask.setOnFailed(onGroupComplete);
-        }
-        
-        Thread executionThread = new Thread(groupTask);
-        executionThread.setDaemon(true);
-        executionThread.start();
-    }
-    
     public void makeScriptExecutable(Script script) {
         try {
             Path scriptPath = script.getFilePath();
@@ -176,6 +179,10 @@ public class ScriptExecutionService {
     }
     
     public ExecutionResult executeScriptWithSudo(Script script) {
+        return executeScriptWithSudo(script, resourceLimiter.limitsFor(script, null));
+    }
+    
+    private ExecutionResult executeScriptWithSudo(Script script, ResourceLimits limits) {
         long startTime = System.currentTimeMillis();
         
         try {
@@ -196,32 +203,21 @@ public class ScriptExecutionService {
             boolean requiresSudo = analysisService.requiresSudo(script);
             System.out.println("Script " + script.getName() + " requires sudo: " + requiresSudo);
             
-            ProcessBuilder processBuilder;
             if (requiresSudo) {
-                // Execute with sudo
+                // Runs through the session's privileged helper; sudo authenticated when it started
                 System.out.println("Executing with sudo: " + scriptPath);
-                processBuilder = new ProcessBuilder("sudo", "-S", scriptPath.toString());
-            } else {
-                // Execute normally
-                System.out.println("Executing normally: " + scriptPath);
-                processBuilder = new ProcessBuilder(scriptPath.toString());
+                return executePrivileged(script, limits, startTime);
             }
             
+            // Execute normally
+            System.out.println("Executing normally: " + scriptPath);
+            ProcessBuilder processBuilder = new ProcessBuilder(resourceLimiter.wrap(List.of(scriptPath.toString()), limits));
+            
             processBuilder.directory(scriptPath.getParent().toFile());
             
             System.out.println("Starting process...");
             Process process = processBuilder.start();
             
-            // If sudo is required, send the password
-            if (requiresSudo) {
-                System.out.println("Sending sudo password...");
-                try (OutputStreamWriter writer = new OutputStreamWriter(process.getOutputStream())) {
-                    writer.write(sudoManager.getPasswordInput(requiresSudo));
-                    writer.flush();
-                }
-                System.out.println("Sudo password sent");
-            }
-            
             // Read output
             StringBuilder output = new StringBuilder();
             StringBuilder error = new StringBuilder();
@@ -249,11 +245,8 @@ public class ScriptExecutionService {
             boolean success = exitCode == 0;
             System.out.println("Script " + script.getName() + " completed with exit code: " + exitCode + " (success: " + success + ")");
             
-            String resultMessage = success ? 
-                "Script executed successfully" + (requiresSudo ? " (with sudo)" : "") : 
-                "Script execution failed";
-            
-            return new ExecutionResult(success, output.toString(), error.toString(), exitCode, executionTime);
+            return new ExecutionResult(success, output.toString(), error.toString(), exitCode, executionTime)
+                .withLimitViolation(resourceLimiter.describeViolation(exitCode, limits));
             
         } catch (Exception e) {
             long executionTime = System.currentTimeMillis() - startTime;
@@ -263,8 +256,43 @@ public class ScriptExecutionService {
         }
     }
 
-    public ExecutionResult executeScriptInTerminal(Script script) {
+    /**
+     * Runs a sudo script through the privileged helper, collecting its output from files
+     */
+    private ExecutionResult executePrivileged(Script script, ResourceLimits limits, long startTime) throws Exception {
+        Path scriptPath = script.getFilePath();
+        Path workDirectory = privilegedHelper.getWorkDirectory();
+        Path stdout = Files.createTempFile(workDirectory, "run-", ".out");
+        Path stderr = Files.createTempFile(workDirectory, "run-", ".err");
+        try {
+            int exitCode = privilegedHelper.run(resourceLimiter.wrap(List.of(scriptPath.toString()), limits, true),
+                scriptPath.getParent(), stdout, stderr).get();
+            long executionTime = System.currentTimeMillis() - startTime;
+            
+            boolean success = exitCode == 0;
+            System.out.println("Script " + script.getName() + " completed with exit code: " + exitCode + " (success: " + success + ")");
+            return new ExecutionResult(success, new String(Files.readAllBytes(stdout)), new String(Files.readAllBytes(stderr)), exitCode, executionTime)
+                .withLimitViolation(resourceLimiter.describeViolation(exitCode, limits));
+        } finally {
+            Files.deleteIfExists(stdout);
+            Files.deleteIfExists(stderr);
+        }
+    }
+
+    /**
+     * Executes a script with stdout and stderr redirected by the OS straight into
+     * a per-run log file, without copying output through the JVM. Intended for
+     * unattended runs; the log can be read later through {@link RunLogStore#tail}.
+     * @param script The script to execute
+     * @return Result whose log file holds the combined output of the run
+     */
+    public ExecutionResult executeScriptToLog(Script script) {
+        return executeScriptToLog(script, resourceLimiter.limitsFor(script, null));
+    }
+    
+    private ExecutionResult executeScriptToLog(Script script, ResourceLimits limits) {
         long startTime = System.currentTimeMillis();
+        Path logFile = null;
         
         try {
             Path scriptPath = script.getFilePath();
@@ -276,52 +304,121 @@ public class ScriptExecutionService {
                 return new ExecutionResult(false, "", "Script is not executable: " + scriptPath, -1, 0);
             }
             
-            // Check if script requires sudo
-            boolean requiresSudo = analysisService.requiresSudo(script);
-            String sudoPrefix = sudoManager.getSudoPrefix(requiresSudo);
-            
-            // Build command with sudo if needed
-            String scriptCommand;
-            if (requiresSudo && !sudoPrefix.isEmpty()) {
-                scriptCommand = "cd \"" + scriptPath.getParent() + "\" && echo '" + 
-                    sudoManager.getPasswordInput(requiresSudo).trim() + "' | " + 
-                    sudoPrefix + " \"" + scriptPath + "\"";
+            logFile = logStore.createLogFile(script);
+            
+            int exitCode;
+            if (analysisService.requiresSudo(script)) {
+                // Root appends to the user's log file, which stays owned by the user
+                exitCode = privilegedHelper.run(resourceLimiter.wrap(List.of(scriptPath.toString()), limits, true),
+                    scriptPath.getParent(), logFile, logFile).get();
             } else {
-                scriptCommand = "cd \"" + scriptPath.getParent() + "\" && \"" + scriptPath + "\"";
+                ProcessBuilder processBuilder = new ProcessBuilder(resourceLimiter.wrap(List.of(scriptPath.toString()), limits));
+                processBuilder.directory(scriptPath.getParent().toFile());
+                processBuilder.redirectErrorStream(true);
+                processBuilder.redirectOutput(ProcessBuilder.Redirect.appendTo(logFile.toFile()));
+                processBuilder.redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")));
+                exitCode = processBuilder.start().waitFor();
             }
+            long executionTime = System.currentTimeMillis() - startTime;
+            boolean success = exitCode == 0;
+            
+            String error = success ? "" : logStore.tail(logFile, FAILURE_TAIL_BYTES);
+            return new ExecutionResult(success, "", error, exitCode, executionTime, logFile)
+                .withLimitViolation(resourceLimiter.describeViolation(exitCode, limits));
+            
+        } catch (Exception e) {
+            long executionTime = System.currentTimeMillis() - startTime;
+            return new ExecutionResult(false, "", "Failed to execute script: " + e.getMessage(), -1, executionTime, logFile);
+        } finally {
+            logStore.release(logFile);
+        }
+    }
+
+    /**
+     * Executes a script unless it declares inputs or outputs and nothing changed
+     * since its last successful run. The input hash covers the current script
+     * content and every declared input; a missing declared output forces a run.
+     * Every executed run is recorded in the run history.
+     * @param script The script to execute
+     * @param forceRun Run even if the inputs are unchanged
+     * @param logToFile Redirect output to a log file instead of capturing it
+     * @return The execution result, or a skipped result if the run was not needed
+     */
+    public ExecutionResult executeIfChanged(Script script, boolean forceRun, boolean logToFile) {
+        return executeIfChanged(script, forceRun, logToFile, null);
+    }
+    
+    /**
+     * Same as {@link #executeIfChanged(Script, boolean, boolean)}, applying a group's resource
+     * limits wherever the script does not set its own
+     * @param groupLimits Limits of the group being run, or null
+     */
+    public ExecutionResult executeIfChanged(Script script, boolean forceRun, boolean logToFile, ResourceLimits groupLimits) {
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        Path scriptPath = script.getFilePath();
+        String inputHash = null;
+        
+        try {
+            // Declarations are re-read from disk so edits since the last scan count
+            String content = Files.readString(scriptPath);
+            List<String> inputs = discoveryService.extractDeclaredPaths(content, "input");
+            List<String> outputs = discoveryService.extractDeclaredPaths(content, "output");
             
-            // Try different terminal emulators
-            String[] terminalCommands = {
-                "gnome-terminal -- bash -c '" + scriptCommand + "; exec bash'",
-                "xterm -e 'bash -c \"" + scriptCommand + "; exec bash\"'",
-                "konsole -e 'bash -c \"" + scriptCommand + "; exec bash\"'",
-                "xfce4-terminal -e 'bash -c \"" + scriptCommand + "; exec bash\"'",
-                "mate-terminal -e 'bash -c \"" + scriptCommand + "; exec bash\"'",
-                "lxterminal -e 'bash -c \"" + scriptCommand + "; exec bash\"'"
-            };
-            
-            ProcessBuilder processBuilder = null;
-            for (String cmd : terminalCommands) {
-                try {
-                    processBuilder = new ProcessBuilder("bash", "-c", cmd);
-                    Process testProcess = processBuilder.start();
-                    testProcess.destroy(); // Just test if the command works
-                    break;
-                } catch (Exception e) {
-                    // Try next terminal
-                    continue;
+            if (!inputs.isEmpty() || !outputs.isEmpty()) {
+                inputHash = ContentHasher.hashInputs(scriptPath, content, inputs);
+                
+                boolean outputsPresent = outputs.stream()
+                    .allMatch(output -> Files.exists(scriptPath.getParent().resolve(output)));
+                if (!forceRun && outputsPresent
+                        && inputHash.equals(dbManager.getLastSuccessfulInputHash(scriptPath.toString()))) {
+                    System.out.println("Skipping " + script.getName() + ": inputs unchanged since last successful run");
+                    return ExecutionResult.skipped("Skipped: inputs unchanged since last successful run");
                 }
             }
+        } catch (Exception e) {
+            // Without a reliable hash the script simply runs
+            System.err.println("Failed to hash inputs of " + script.getName() + ": " + e.getMessage());
+            inputHash = null;
+        }
+        
+        ResourceLimits limits = resourceLimiter.limitsFor(script, groupLimits);
+        LocalDateTime startedAt = LocalDateTime.now();
+        ExecutionResult result = logToFile ? executeScriptToLog(script, limits) : executeScriptWithSudo(script, limits);
+        
+        try {
+            dbManager.recordRun(scriptPath.toString(), startedAt, result.getExecutionTimeMs(),
+                result.getExitCode(), result.isSuccess(), inputHash, result.getLimitViolation());
+        } catch (SQLException e) {
+            System.err.println("Failed to record run of " + script.getName() + ": " + e.getMessage());
+        }
+        
+        return result;
+    }
+    
+    public ExecutionResult executeScriptInTerminal(Script script) {
+        long startTime = System.currentTimeMillis();
+        
+        try {
+            Path scriptPath = script.getFilePath();
+            if (!scriptPath.toFile().exists()) {
+                return new ExecutionResult(false, "", "Script file not found: " + scriptPath, -1, 0);
+            }
             
-            if (processBuilder == null) {
-                return new ExecutionResult(false, "", "No suitable terminal emulator found. Please install gnome-terminal, xterm, or another terminal emulator.", -1, 0);
+            if (!scriptPath.toFile().canExecute()) {
+                return new ExecutionResult(false, "", "Script is not executable: " + scriptPath, -1, 0);
             }
             
-            // Execute the terminal command
-            Process process = processBuilder.start();
+            // Check if script requires sudo
+            boolean requiresSudo = analysisService.requiresSudo(script) && sudoManager.hasValidPassword();
+            
+            // The script path is passed as an argument, so no user data is ever spliced into shell code
+            List<String> command = List.of("bash", "-c",
+                requiresSudo ? TERMINAL_SUDO_COMMAND : TERMINAL_COMMAND, "autoshell", scriptPath.toString());
+            Map<String, String> environment = requiresSudo
+                ? Map.of(SUDO_PASSWORD_ENV, sudoManager.getCachedPassword())
+                : Map.of();
             
-            // Wait a bit to see if the terminal opens successfully
-            Thread.sleep(1000);
+            terminalLauncher.launch(command, scriptPath.getParent(), "AutoShell - " + script.getName(), environment);
             
             long executionTime = System.currentTimeMillis() - startTime;
             return new ExecutionResult(true, "Terminal opened successfully" + 
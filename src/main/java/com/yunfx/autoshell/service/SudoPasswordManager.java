@@ -1,27 +1,69 @@
 package com.yunfx.autoshell.service;
 
-import javafx.application.Platform;
-import javafx.scene.control.Alert;
-import javafx.scene.control.ButtonBar;
-import javafx.scene.control.ButtonType;
-import javafx.scene.control.PasswordField;
-import javafx.scene.control.TextInputDialog;
-import javafx.scene.layout.GridPane;
-import javafx.scene.layout.Priority;
-import javafx.scene.text.Text;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class SudoPasswordManager {
+    private static final long SUDO_TIMEOUT_SECONDS = 30;
+    // Well inside sudo's default 15 minute timestamp timeout
+    private static final long KEEP_ALIVE_INTERVAL_SECONDS = 120;
+    
     private static SudoPasswordManager instance;
-    private String cachedPassword;
-    private boolean passwordValidated;
+    private volatile String cachedPassword;
+    private volatile boolean passwordValidated;
+    private volatile PasswordPrompt passwordPrompt;
+    // Serializes prompts apart from the keep-alive state guarded by this
+    private final Object promptLock = new Object();
+    
+    private final ExecutorService sudoExecutor;
+    private final ScheduledExecutorService keepAliveExecutor;
+    private int keepAliveUsers;
+    private ScheduledFuture<?> keepAliveTask;
     
     private SudoPasswordManager() {
         this.cachedPassword = null;
         this.passwordValidated = false;
+        this.sudoExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "autoshell-sudo");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.keepAliveExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "autoshell-sudo-keepalive");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Keeps the sudo timestamp fresh while privileged work is queued or running.
+     * Closing the last open instance stops the refreshes.
+     */
+    public class KeepAlive implements AutoCloseable {
+        private boolean closed;
+        
+        @Override
+        public void close() {
+            synchronized (SudoPasswordManager.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                keepAliveUsers--;
+                if (keepAliveUsers == 0 && keepAliveTask != null) {
+                    keepAliveTask.cancel(false);
+                    keepAliveTask = null;
+                    System.out.println("Sudo keep-alive stopped");
+                }
+            }
+        }
     }
     
     public static synchronized SudoPasswordManager getInstance() {
@@ -32,121 +74,137 @@ public class SudoPasswordManager {
     }
     
     /**
-     * Requests sudo password from user if not already cached
+     * Sets how the user is asked for a password
+     * @param passwordPrompt The prompt to use, or null if no user can be asked
+     */
+    public void setPasswordPrompt(PasswordPrompt passwordPrompt) {
+        this.passwordPrompt = passwordPrompt;
+    }
+    
+    /**
+     * Checks whether the user can be asked for a password
+     * @return true if a password prompt is configured
+     */
+    public boolean hasPasswordPrompt() {
+        return passwordPrompt != null;
+    }
+    
+    /**
+     * Requests sudo password from user if not already cached. One prompt is shown at a
+     * time; the keep-alive lock is not held while the user is asked.
      * @param reason Reason for requesting sudo password
      * @return true if password was obtained (either cached or newly entered), false if cancelled
      */
     public boolean requestSudoPassword(String reason) {
-        if (passwordValidated && cachedPassword != null) {
-            return true; // Password already cached and validated
-        }
-        
-        // Clear any invalid password
-        clearPassword();
-        
-        return Platform.isFxApplicationThread() ? 
-            requestPasswordOnFXThread(reason) : 
-            requestPasswordOnBackgroundThread(reason);
-    }
-    
-    private boolean requestPasswordOnFXThread(String reason) {
-        while (true) {
-            Alert passwordDialog = new Alert(Alert.AlertType.CONFIRMATION);
-            passwordDialog.setTitle("Sudo Password Required");
-            passwordDialog.setHeaderText("Sudo Password Required");
-            passwordDialog.setContentText("Some scripts require sudo privileges to execute.\n\nReason: " + reason);
-            
-            // Create password field
-            PasswordField passwordField = new PasswordField();
-            passwordField.setPromptText("Enter sudo password");
-            passwordField.setPrefColumnCount(20);
-            
-            // Create grid pane for layout
-            GridPane gridPane = new GridPane();
-            gridPane.setHgap(10);
-            gridPane.setVgap(10);
-            gridPane.setMaxWidth(Double.MAX_VALUE);
-            
-            Text label = new Text("Sudo Password:");
-            gridPane.add(label, 0, 0);
-            gridPane.add(passwordField, 1, 0);
-            
-            GridPane.setHgrow(passwordField, Priority.ALWAYS);
-            
-            passwordDialog.getDialogPane().setContent(gridPane);
+        synchronized (promptLock) {
+            if (passwordValidated && cachedPassword != null) {
+                return true; // Password already cached and validated
+            }
             
-            // Customize buttons
-            ButtonType okButton = new ButtonType("OK");
-            ButtonType cancelButton = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
-            passwordDialog.getButtonTypes().setAll(okButton, cancelButton);
+            // Clear any invalid password
+            clearPassword();
             
-            // Focus on password field
-            Platform.runLater(passwordField::requestFocus);
+            if (passwordPrompt == null) {
+                System.err.println("Sudo password requested but no password prompt is available: " + reason);
+                return false;
+            }
             
-            Optional<ButtonType> result = passwordDialog.showAndWait();
-            if (result.isPresent() && result.get() == okButton) {
-                String password = passwordField.getText();
-                if (password != null && !password.trim().isEmpty()) {
-                    cachedPassword = password.trim();
-                    
-                    // Validate the password
-                    if (validatePassword()) {
-                        return true;
-                    } else {
-                        // Show error and retry
-                        Alert errorDialog = new Alert(Alert.AlertType.ERROR);
-                        errorDialog.setTitle("Invalid Password");
-                        errorDialog.setHeaderText("Invalid Sudo Password");
-                        errorDialog.setContentText("The password you entered is incorrect. Please try again.");
-                        errorDialog.showAndWait();
-                        // Continue the loop to retry
-                    }
-                } else {
-                    // Show error for empty password
-                    Alert errorDialog = new Alert(Alert.AlertType.ERROR);
-                    errorDialog.setTitle("Empty Password");
-                    errorDialog.setHeaderText("Password Required");
-                    errorDialog.setContentText("Please enter a password.");
-                    errorDialog.showAndWait();
-                    // Continue the loop to retry
+            String previousError = null;
+            while (true) {
+                String password = passwordPrompt.requestPassword(reason, previousError);
+                if (password == null) {
+                    // User cancelled
+                    return false;
                 }
-            } else {
-                // User cancelled
-                return false;
+                
+                if (password.trim().isEmpty()) {
+                    previousError = "Please enter a password.";
+                    continue;
+                }
+                
+                cachedPassword = password.trim();
+                
+                // Validate the password off the calling thread; the prompt decides how to wait
+                if (passwordPrompt.await(validatePasswordAsync())) {
+                    return true;
+                }
+                previousError = "The password you entered is incorrect. Please try again.";
             }
         }
     }
     
-    private boolean requestPasswordOnBackgroundThread(String reason) {
-        // This should not be called on background thread, but handle gracefully
-        System.err.println("Sudo password requested on background thread: " + reason);
-        
-        // Use a more robust approach with CountDownLatch
-        final java.util.concurrent.CountDownLatch latch = new java.util.concurrent.CountDownLatch(1);
-        final boolean[] result = {false};
-        
-        Platform.runLater(() -> {
-            try {
-                result[0] = requestPasswordOnFXThread(reason);
-            } finally {
-                latch.countDown();
+    /**
+     * Validates the cached password on a background thread
+     * @return A future completed with true if sudo accepted the password
+     */
+    public CompletableFuture<Boolean> validatePasswordAsync() {
+        return CompletableFuture.supplyAsync(this::validatePassword, sudoExecutor);
+    }
+    
+    /**
+     * Starts keeping the sudo timestamp alive, so runs that call sudo late in a long
+     * group do not need the password again. Close the result when the work is done.
+     * @return A handle whose close() ends this caller's interest in the keep-alive
+     */
+    public synchronized KeepAlive keepAlive() {
+        keepAliveUsers++;
+        if (keepAliveTask == null) {
+            keepAliveTask = keepAliveExecutor.scheduleWithFixedDelay(() -> {
+                if (hasValidPassword() && !refreshTimestamp()) {
+                    System.err.println("Sudo keep-alive refresh failed");
+                }
+            }, KEEP_ALIVE_INTERVAL_SECONDS, KEEP_ALIVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            System.out.println("Sudo keep-alive started");
+        }
+        return new KeepAlive();
+    }
+    
+    /**
+     * Refreshes the sudo timestamp with "sudo -v" and the cached password, so
+     * "sudo -n" keeps working
+     * @return true if sudo accepted the password
+     */
+    public boolean refreshTimestamp() {
+        try {
+            Process process = new ProcessBuilder("sudo", "-S", "-p", "", "-v")
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            try (OutputStreamWriter writer = new OutputStreamWriter(process.getOutputStream())) {
+                writer.write(getPasswordInput(true));
             }
-        });
-        
-        // Wait for the result (with timeout)
+            if (!process.waitFor(SUDO_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (Exception e) {
+            System.err.println("Failed to refresh sudo timestamp: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Checks with "sudo -n" whether sudo works without asking for a password, through
+     * NOPASSWD rules or a current timestamp. Never prompts.
+     * @return true if sudo can be used non-interactively
+     */
+    public boolean canSudoWithoutPassword() {
         try {
-            boolean completed = latch.await(60, java.util.concurrent.TimeUnit.SECONDS); // 60 second timeout
-            if (!completed) {
-                System.err.println("Password request timed out");
+            Process process = new ProcessBuilder("sudo", "-n", "true")
+                .redirectInput(ProcessBuilder.Redirect.from(new java.io.File("/dev/null")))
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+            if (!process.waitFor(SUDO_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
                 return false;
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.err.println("Password request interrupted");
+            return process.exitValue() == 0;
+        } catch (Exception e) {
+            System.err.println("Failed to run sudo -n: " + e.getMessage());
             return false;
         }
-        
-        return result[0];
     }
     
     /**
@@ -183,8 +241,8 @@ public class SudoPasswordManager {
         }
         
         try {
-            // Test password with a simple sudo command
-            ProcessBuilder pb = new ProcessBuilder("sudo", "-S", "echo", "test");
+            // Test the password; -v also starts the sudo timestamp
+            ProcessBuilder pb = new ProcessBuilder("sudo", "-S", "-p", "", "-v");
             Process process = pb.start();
             
             // Send password to sudo
@@ -202,8 +260,10 @@ public class SudoPasswordManager {
                 }
             }
             
-            int exitCode = process.waitFor();
-            passwordValidated = (exitCode == 0);
+            if (!process.waitFor(SUDO_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+            passwordValidated = !process.isAlive() && process.exitValue() == 0;
             
             if (!passwordValidated) {
                 System.err.println("Sudo password validation failed. Error: " + errorOutput.toString());
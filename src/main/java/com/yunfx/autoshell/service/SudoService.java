@@ -9,11 +9,42 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.text.Text;
 
 import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class SudoService {
+    private static final Path STATUS_ROOT = Paths.get(System.getProperty("user.home"), ".local", "share", "yunfx-autoshell", "terminal");
+    private static final String STATUS_FILE_NAME = "exit.status";
+    // Longest a terminal sudo command may run before the wait is given up
+    private static final long TERMINAL_TIMEOUT_MINUTES = 30;
+    
+    // Runs in the terminal; $1 is the command and $2 the status file. The exit code is written
+    // before the "press any key" pause, and closing the window early reports 129 (SIGHUP).
+    private static final String TERMINAL_SUDO_SCRIPT = String.join("\n",
+        "report() { printf '%s\\n' \"$1\" > \"$2.tmp\" && mv \"$2.tmp\" \"$2\"; }",
+        "status=\"$2\"",
+        "trap 'report 129 \"$status\"; exit 129' HUP",
+        "echo \"🔐 Administrator privileges required for: $1\"",
+        "echo 'Please enter your password when prompted:'",
+        "echo ''",
+        "sudo bash -c \"$1\"",
+        "rc=$?",
+        "report \"$rc\" \"$status\"",
+        "trap - HUP",
+        "echo ''",
+        "if [ \"$rc\" -eq 0 ]; then echo '✅ Command completed successfully!'; else echo \"❌ Command failed (exit $rc)!\"; fi",
+        "echo ''",
+        "echo 'Press any key to close this terminal...'",
+        "read -n 1");
+    
+    private final TerminalLauncher terminalLauncher = TerminalLauncher.getInstance();
+    private final DependencyProbe dependencyProbe = new DependencyProbe();
     
     public static class SudoResult {
         private final boolean success;
@@ -34,22 +65,24 @@ public class SudoService {
         public int getExitCode() { return exitCode; }
     }
     
+    /**
+     * Runs a command, in a terminal with sudo if it needs administrator privileges
+     * @param command The shell command to run
+     * @return A future completed with the command's real result once it has finished
+     */
     public CompletableFuture<SudoResult> executeSudoCommandAsync(String command) {
-        return CompletableFuture.supplyAsync(() -> {
-            return executeSudoCommand(command);
-        });
+        // First check if sudo is needed
+        if (!isSudoRequired(command)) {
+            return executeCommandAsync(command);
+        }
+        
+        // Open terminal for sudo command
+        return executeSudoCommandInTerminal(command);
     }
     
     public SudoResult executeSudoCommand(String command) {
         try {
-            // First check if sudo is needed
-            if (!isSudoRequired(command)) {
-                return executeCommandSync(command);
-            }
-            
-            // Open terminal for sudo command
-            return executeSudoCommandInTerminal(command);
-            
+            return executeSudoCommandAsync(command).join();
         } catch (Exception e) {
             return new SudoResult(false, "", "Error executing command: " + e.getMessage(), -1);
         }
@@ -123,57 +156,47 @@ public class SudoService {
         return password[0];
     }
     
-    private SudoResult executeSudoCommandInTerminal(String command) {
+    private CompletableFuture<SudoResult> executeSudoCommandInTerminal(String command) {
+        ExitStatusWatcher watcher = null;
         try {
-            // Create a script that will run the sudo command in a terminal
-            String scriptContent = String.format(
-                "#!/bin/bash\n" +
-                "echo '🔐 Administrator privileges required for: %s'\n" +
-                "echo 'Please enter your password when prompted:'\n" +
-                "echo ''\n" +
-                "if %s; then\n" +
-                "    echo ''\n" +
-                "    echo '✅ Command completed successfully!'\n" +
-                "else\n" +
-                "    echo ''\n" +
-                "    echo '❌ Command failed!'\n" +
-                "fi\n" +
-                "echo ''\n" +
-                "echo 'Press any key to close this terminal...'\n" +
-                "read -n 1\n",
-                command, command
-            );
-            
-            // Write script to temp file
-            String tempScript = System.getProperty("java.io.tmpdir") + "/yunfx_sudo_" + System.currentTimeMillis() + ".sh";
-            try (PrintWriter writer = new PrintWriter(new FileWriter(tempScript))) {
-                writer.write(scriptContent);
-            }
-            
-            // Make script executable
-            new File(tempScript).setExecutable(true);
+            // The status directory, and the status file in it, are removed only once the command finished
+            watcher = new ExitStatusWatcher(STATUS_ROOT, "sudo-");
+            Path statusFile = watcher.getDirectory().resolve(STATUS_FILE_NAME);
+            CompletableFuture<Integer> exitCode = watcher.expect(STATUS_FILE_NAME);
             
-            // Open terminal with the script
-            String terminalCommand = String.format(
-                "gnome-terminal --title='YunFx AutoShell - Administrator Access' -- bash -c '%s'",
-                tempScript
-            );
+            // The command and status file are arguments, never spliced into the shell code
+            Process terminal = terminalLauncher.launch(
+                List.of("bash", "-c", TERMINAL_SUDO_SCRIPT, "autoshell", command, statusFile.toString()),
+                Paths.get(System.getProperty("user.home")), "YunFx AutoShell - Administrator Access", Map.of());
             
-            ProcessBuilder processBuilder = new ProcessBuilder("bash", "-c", terminalCommand);
-            processBuilder.redirectErrorStream(true);
-            
-            Process process = processBuilder.start();
-            
-            // Wait for terminal to open
-            Thread.sleep(2000);
-            
-            // Clean up temp script
-            new File(tempScript).delete();
-            
-            return new SudoResult(true, "Terminal opened for sudo command: " + command, "", 0);
+            // A terminal that exits with a failure never ran the command; one that hands off to a
+            // server exits cleanly at once, so only the timeout covers a window closed without a status
+            ExitStatusWatcher launchedWatcher = watcher;
+            terminal.onExit().thenAccept(process -> {
+                if (process.exitValue() != 0) {
+                    launchedWatcher.close();
+                }
+            });
+            return exitCode
+                .orTimeout(TERMINAL_TIMEOUT_MINUTES, TimeUnit.MINUTES)
+                .handle((code, error) -> {
+                    launchedWatcher.close();
+                    if (error != null) {
+                        return new SudoResult(false, "", (error instanceof TimeoutException
+                            ? "Gave up waiting for the terminal after " + TERMINAL_TIMEOUT_MINUTES + " minutes"
+                            : "Terminal closed before the command finished") + ": " + command, -1);
+                    }
+                    return code == 0
+                        ? new SudoResult(true, "Command completed successfully: " + command, "", code)
+                        : new SudoResult(false, "", "Command failed with exit code " + code + ": " + command, code);
+                });
             
         } catch (Exception e) {
-            return new SudoResult(false, "", "Error opening terminal for sudo command: " + e.getMessage(), -1);
+            if (watcher != null) {
+                watcher.close();
+            }
+            return CompletableFuture.completedFuture(
+                new SudoResult(false, "", "Error opening terminal for sudo command: " + e.getMessage(), -1));
         }
     }
     
@@ -217,16 +240,31 @@ public class SudoService {
     }
     
     public CompletableFuture<SudoResult> installDependencyAsync(String dependency) {
-        return CompletableFuture.supplyAsync(() -> {
-            String command = "apt update && apt install -y " + dependency;
-            return executeSudoCommand(command);
+        String command = "apt update && apt install -y " + dependency;
+        return executeSudoCommandAsync(command).thenApply(result -> {
+            if (result.isSuccess()) {
+                dependencyProbe.invalidate();
+            }
+            return result;
         });
     }
     
     public CompletableFuture<SudoResult> checkDependencyAsync(String dependency) {
         return CompletableFuture.supplyAsync(() -> {
-            String command = "which " + dependency + " || dpkg -l | grep -q " + dependency;
-            return executeCommandSync(command);
+            DependencyProbe.Dependency probed = new DependencyProbe.Dependency(dependency, dependency, null, dependency);
+            // Not cached: the cache holds the result for the application's required dependencies
+            boolean installed = dependencyProbe.isInstalled(probed);
+            return new SudoResult(installed, installed ? dependency + " is installed" : "",
+                installed ? "" : dependency + " is not installed", installed ? 0 : 1);
         });
     }
+    
+    /**
+     * Checks several dependencies at once without blocking the caller
+     * @param dependencies The dependencies to check
+     * @return A future completed with the missing dependencies
+     */
+    public CompletableFuture<List<DependencyProbe.Dependency>> findMissingDependenciesAsync(List<DependencyProbe.Dependency> dependencies) {
+        return CompletableFuture.supplyAsync(() -> dependencyProbe.findMissing(dependencies));
+    }
 }
@@ -0,0 +1,198 @@
+package com.yunfx.autoshell.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Opens commands in a terminal emulator window. The available emulator is
+ * detected once through a PATH lookup and cached until it disappears or a
+ * launch fails. Commands are passed as argv arrays, never as shell strings.
+ */
+public class TerminalLauncher {
+
+    /**
+     * Supported terminal emulators in order of preference
+     */
+    public enum Emulator {
+        GNOME_TERMINAL("gnome-terminal"),
+        KONSOLE("konsole"),
+        XFCE4_TERMINAL("xfce4-terminal"),
+        MATE_TERMINAL("mate-terminal"),
+        LXTERMINAL("lxterminal"),
+        XTERM("xterm");
+
+        private final String binary;
+
+        Emulator(String binary) {
+            this.binary = binary;
+        }
+
+        public String getBinary() { return binary; }
+
+        /**
+         * Builds the argv that opens a window running the given command
+         */
+        List<String> buildArgv(Path executable, Path workingDirectory, String title, List<String> command) {
+            List<String> argv = new ArrayList<>();
+            argv.add(executable.toString());
+            switch (this) {
+                case GNOME_TERMINAL:
+                    argv.add("--working-directory=" + workingDirectory);
+                    if (title != null) argv.add("--title=" + title);
+                    argv.add("--");
+                    break;
+                case KONSOLE:
+                    argv.add("--workdir");
+                    argv.add(workingDirectory.toString());
+                    if (title != null) {
+                        argv.add("-p");
+                        argv.add("tabtitle=" + title);
+                    }
+                    argv.add("-e");
+                    break;
+                case XFCE4_TERMINAL:
+                case MATE_TERMINAL:
+                    argv.add("--working-directory=" + workingDirectory);
+                    if (title != null) argv.add("--title=" + title);
+                    argv.add("-x");
+                    break;
+                case LXTERMINAL:
+                    argv.add("--working-directory=" + workingDirectory);
+                    if (title != null) argv.add("--title=" + title);
+                    argv.add("-e");
+                    break;
+                case XTERM:
+                    if (title != null) {
+                        argv.add("-T");
+                        argv.add(title);
+                    }
+                    argv.add("-e");
+                    break;
+            }
+            argv.addAll(command);
+            return argv;
+        }
+    }
+
+    // A failing exit this soon after the launch means the window never opened
+    private static final long STARTUP_FAILURE_SECONDS = 5;
+
+    private static TerminalLauncher instance;
+
+    private volatile Emulator cachedEmulator;
+    private volatile Path cachedExecutable;
+    private volatile Consumer<String> launchFailureListener;
+
+    private TerminalLauncher() {
+    }
+
+    public static synchronized TerminalLauncher getInstance() {
+        if (instance == null) {
+            instance = new TerminalLauncher();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the detected terminal emulator, detecting it on first use
+     * @return The emulator, or empty if none is installed
+     */
+    public synchronized Optional<Emulator> getEmulator() {
+        if (cachedExecutable != null && !Files.isExecutable(cachedExecutable)) {
+            // The cached emulator was uninstalled since detection
+            invalidate();
+        }
+        if (cachedEmulator == null) {
+            for (Emulator emulator : Emulator.values()) {
+                Optional<Path> executable = BinaryLocator.find(emulator.getBinary());
+                if (executable.isPresent()) {
+                    cachedEmulator = emulator;
+                    cachedExecutable = executable.get();
+                    break;
+                }
+            }
+        }
+        return Optional.ofNullable(cachedEmulator);
+    }
+
+    /**
+     * Sets who is told about terminals that failed right after launch() returned
+     * @param listener Receives the error message on a background thread, or null
+     */
+    public void setLaunchFailureListener(Consumer<String> listener) {
+        this.launchFailureListener = listener;
+    }
+
+    /**
+     * Forgets the detected emulator so the next launch detects it again
+     */
+    public synchronized void invalidate() {
+        cachedEmulator = null;
+        cachedExecutable = null;
+    }
+
+    /**
+     * Opens a terminal window running a command
+     * @param command The argv to run inside the terminal
+     * @param workingDirectory Directory the command starts in
+     * @param title Window title, or null for the emulator's default
+     * @param environment Extra environment variables for the command, may be empty
+     * @return The launched terminal process, as soon as it started; a failure right after
+     *         that goes to the launch failure listener
+     * @throws IOException if no emulator is available or the process could not be started
+     */
+    public Process launch(List<String> command, Path workingDirectory, String title,
+                          Map<String, String> environment) throws IOException {
+        Optional<Emulator> emulator;
+        Path executable;
+        // Read both together so a concurrent invalidate() cannot clear one in between
+        synchronized (this) {
+            emulator = getEmulator();
+            executable = cachedExecutable;
+        }
+        if (emulator.isEmpty()) {
+            throw new IOException("No suitable terminal emulator found. Please install gnome-terminal, xterm, or another terminal emulator.");
+        }
+
+        ProcessBuilder processBuilder = new ProcessBuilder(
+            emulator.get().buildArgv(executable, workingDirectory, title, command));
+        processBuilder.directory(workingDirectory.toFile());
+        processBuilder.environment().putAll(environment);
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+
+        Process process;
+        try {
+            process = processBuilder.start();
+        } catch (IOException e) {
+            invalidate();
+            throw e;
+        }
+
+        // Launchers such as gnome-terminal hand off to a server and exit right away, and
+        // others keep running, so launch() returns at once and an early failing exit is
+        // reported when it happens
+        long startedAt = System.nanoTime();
+        String binary = emulator.get().getBinary();
+        process.onExit().thenAccept(exited -> {
+            if (exited.exitValue() != 0
+                    && System.nanoTime() - startedAt < TimeUnit.SECONDS.toNanos(STARTUP_FAILURE_SECONDS)) {
+                invalidate();
+                String message = binary + " exited with status " + exited.exitValue() + " before opening a window";
+                System.err.println(message);
+                Consumer<String> listener = launchFailureListener;
+                if (listener != null) {
+                    listener.accept(message);
+                }
+            }
+        });
+        return process;
+    }
+}
@@ -0,0 +1,182 @@
+package com.yunfx.autoshell.service;
+
+import com.yunfx.autoshell.model.Script;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs a whole group in one tmux session, one window per script, on a tmux
+ * server of its own. The session is created by a single tmux invocation, and
+ * each window writes its script's exit code to a status file that an
+ * {@link ExitStatusWatcher} turns into a future.
+ */
+public class TmuxSessionService {
+    public static final String SOCKET_NAME = "yunfx-autoshell";
+
+    private static final Path STATUS_ROOT = Paths.get(System.getProperty("user.home"), ".local", "share", "yunfx-autoshell", "tmux");
+    private static final DateTimeFormatter SESSION_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final long TMUX_TIMEOUT_SECONDS = 10;
+
+    // Window shell snippets; $1 is the script path and $2 the status file. The status file
+    // is renamed into place so the watcher never reads a partial write.
+    private static final String STATUS_SUFFIX =
+        "rc=$?; printf '%s\\n' \"$rc\" > \"$2.tmp\" && mv \"$2.tmp\" \"$2\"; echo; echo \"[exit $rc]\"; exec bash";
+    private static final String WINDOW_COMMAND = "\"$1\"; " + STATUS_SUFFIX;
+    private static final String WINDOW_SUDO_COMMAND = "sudo \"$1\"; " + STATUS_SUFFIX;
+
+    private final ScriptAnalysisService analysisService;
+    private final TerminalLauncher terminalLauncher;
+
+    public TmuxSessionService() {
+        this.analysisService = new ScriptAnalysisService();
+        this.terminalLauncher = TerminalLauncher.getInstance();
+    }
+
+    /**
+     * @return true if tmux is installed
+     */
+    public boolean isAvailable() {
+        return BinaryLocator.isAvailable("tmux");
+    }
+
+    /**
+     * A group running in a tmux session
+     */
+    public static class TmuxRun implements AutoCloseable {
+        private final String sessionName;
+        private final Map<Script, CompletableFuture<Integer>> exitCodes;
+        private final ExitStatusWatcher watcher;
+        private final long startedAt;
+
+        TmuxRun(String sessionName, Map<Script, CompletableFuture<Integer>> exitCodes, ExitStatusWatcher watcher) {
+            this.sessionName = sessionName;
+            this.exitCodes = exitCodes;
+            this.watcher = watcher;
+            this.startedAt = System.currentTimeMillis();
+        }
+
+        public String getSessionName() { return sessionName; }
+        public long getStartedAt() { return startedAt; }
+
+        /**
+         * Exit codes of the scripts, completed as each window's script finishes
+         */
+        public Map<Script, CompletableFuture<Integer>> getExitCodes() { return exitCodes; }
+
+        public List<String> getAttachCommand() {
+            return List.of("tmux", "-L", SOCKET_NAME, "attach-session", "-t", sessionName);
+        }
+
+        public int getFinishedCount() {
+            return (int) exitCodes.values().stream().filter(CompletableFuture::isDone).count();
+        }
+
+        /**
+         * @return true while the tmux session exists; a closed session will not report more exit codes
+         */
+        public boolean isSessionAlive() {
+            try {
+                Process process = new ProcessBuilder("tmux", "-L", SOCKET_NAME, "has-session", "-t", sessionName)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+                return process.waitFor(5, TimeUnit.SECONDS) && process.exitValue() == 0;
+            } catch (IOException | InterruptedException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void close() {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Creates a tmux session running every script in its own window
+     * @param groupName Name of the group, used for the session name
+     * @param scripts The scripts to run
+     * @return The running session with one exit code future per script
+     */
+    public TmuxRun launchGroup(String groupName, List<Script> scripts) throws IOException {
+        // The random part keeps runs of the same group started within a second apart
+        String sessionName = "autoshell-" + groupName.replaceAll("[^A-Za-z0-9_-]", "_") + "-" +
+            LocalDateTime.now().format(SESSION_TIMESTAMP) + "-" + UUID.randomUUID().toString().substring(0, 8);
+        ExitStatusWatcher watcher = new ExitStatusWatcher(STATUS_ROOT, sessionName + "-");
+
+        // One tmux invocation; commands are separated by ";" arguments
+        List<String> command = new ArrayList<>(List.of("tmux", "-L", SOCKET_NAME));
+        Map<Script, CompletableFuture<Integer>> exitCodes = new LinkedHashMap<>();
+        for (int i = 0; i < scripts.size(); i++) {
+            Script script = scripts.get(i);
+            Path scriptPath = script.getFilePath();
+            String statusFileName = i + ".status";
+
+            if (i == 0) {
+                command.addAll(List.of("new-session", "-d", "-s", sessionName));
+            } else {
+                command.addAll(List.of(";", "new-window", "-d", "-t", sessionName + ":"));
+            }
+            command.addAll(List.of("-n", script.getName(), "-c", scriptPath.getParent().toString()));
+
+            // sudo asks for the password inside the window, so it never leaves the user's terminal
+            String snippet = analysisService.requiresSudo(script) ? WINDOW_SUDO_COMMAND : WINDOW_COMMAND;
+            command.add("bash -c " + shellQuote(snippet) + " autoshell " + shellQuote(scriptPath.toString()) + " " +
+                shellQuote(watcher.getDirectory().resolve(statusFileName).toString()));
+
+            exitCodes.put(script, watcher.expect(statusFileName));
+        }
+
+        try {
+            Process process = new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            // stderr is drained on its own thread so a tmux that hangs cannot block past the timeout
+            FutureTask<String> error = new FutureTask<>(() -> new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8));
+            Thread reader = new Thread(error, "autoshell-tmux-stderr");
+            reader.setDaemon(true);
+            reader.start();
+            if (!process.waitFor(TMUX_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("tmux did not start the session within " + TMUX_TIMEOUT_SECONDS + " seconds");
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("tmux failed: " + error.get(TMUX_TIMEOUT_SECONDS, TimeUnit.SECONDS).trim());
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            watcher.close();
+            throw new IOException("tmux failed and its error output cannot be read", e);
+        } catch (IOException | InterruptedException e) {
+            watcher.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+
+        return new TmuxRun(sessionName, exitCodes, watcher);
+    }
+
+    /**
+     * Opens a terminal window attached to a session
+     * @param run The session to attach to
+     * @param title Window title
+     */
+    public void attach(TmuxRun run, String title) throws IOException {
+        terminalLauncher.launch(run.getAttachCommand(), Paths.get(System.getProperty("user.home")), title, Map.of());
+    }
+
+    private static String shellQuote(String value) {
+        return "'" + value.replace("'", "'\\''") + "'";
+    }
+}
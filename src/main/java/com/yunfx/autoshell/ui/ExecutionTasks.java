@@ -0,0 +1,82 @@
+package com.yunfx.autoshell.ui;
+
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.model.ScriptGroup;
+import com.yunfx.autoshell.service.ScriptExecutionService;
+import com.yunfx.autoshell.service.ScriptExecutionService.ExecutionResult;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
+import javafx.event.EventHandler;
+
+import java.util.List;
+
+/**
+ * JavaFX {@link Task} wrappers around {@link ScriptExecutionService}, kept in the UI
+ * layer so the execution service itself has no JavaFX dependency.
+ */
+public class ExecutionTasks {
+    private final ScriptExecutionService executionService;
+
+    public ExecutionTasks(ScriptExecutionService executionService) {
+        this.executionService = executionService;
+    }
+
+    public Task<ExecutionResult> createExecutionTask(Script script) {
+        return new Task<ExecutionResult>() {
+            @Override
+            protected ExecutionResult call() throws Exception {
+                return executionService.executeScript(script);
+            }
+        };
+    }
+
+    public void executeGroupSequentially(ScriptGroup group,
+                                       EventHandler<WorkerStateEvent> onScriptComplete,
+                                       EventHandler<WorkerStateEvent> onGroupComplete) {
+
+        Task<Void> groupTask = new Task<Void>() {
+            @Override
+            protected Void call() throws Exception {
+                List<Script> scripts = group.getScripts();
+
+                for (int i = 0; i < scripts.size(); i++) {
+                    Script script = scripts.get(i);
+
+                    // Update progress
+                    updateProgress(i, scripts.size());
+                    updateMessage("Executing: " + script.getName());
+
+                    // Execute script
+                    ExecutionResult result = executionService.executeScript(script);
+
+                    // Notify completion
+                    if (onScriptComplete != null) {
+                        javafx.application.Platform.runLater(() -> {
+                            onScriptComplete.handle(new WorkerStateEvent(this, null));
+                        });
+                    }
+
+                    // If script failed and we want to stop on first failure
+                    if (!result.isSuccess()) {
+                        updateMessage("Script failed: " + script.getName());
+                        break;
+                    }
+                }
+
+                updateProgress(scripts.size(), scripts.size());
+                updateMessage("Group execution completed");
+
+                return null;
+            }
+        };
+
+        if (onGroupComplete != null) {
+            groupTask.setOnSucceeded(onGroupComplete);
+            groupTask.setOnFailed(onGroupComplete);
+        }
+
+        Thread executionThread = new Thread(groupTask);
+        executionThread.setDaemon(true);
+        executionThread.start();
+    }
+}
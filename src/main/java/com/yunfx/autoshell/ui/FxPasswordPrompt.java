@@ -0,0 +1,120 @@
+package com.yunfx.autoshell.ui;
+
+import com.yunfx.autoshell.service.PasswordPrompt;
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.PasswordField;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import javafx.scene.text.Text;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asks for the sudo password with a JavaFX dialog. Safe to call from any thread;
+ * background callers block until the dialog on the FX thread is closed.
+ */
+public class FxPasswordPrompt implements PasswordPrompt {
+
+    @Override
+    public String requestPassword(String reason, String previousError) {
+        if (Platform.isFxApplicationThread()) {
+            return showDialog(reason, previousError);
+        }
+
+        // Use a more robust approach with CountDownLatch
+        final CountDownLatch latch = new CountDownLatch(1);
+        final String[] result = {null};
+
+        Platform.runLater(() -> {
+            try {
+                result[0] = showDialog(reason, previousError);
+            } finally {
+                latch.countDown();
+            }
+        });
+
+        // Wait for the result (with timeout)
+        try {
+            boolean completed = latch.await(60, TimeUnit.SECONDS); // 60 second timeout
+            if (!completed) {
+                System.err.println("Password request timed out");
+                return null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Password request interrupted");
+            return null;
+        }
+
+        return result[0];
+    }
+
+    /**
+     * On the FX thread, runs a nested event loop until the work completes, so the UI keeps
+     * painting and handling input instead of freezing
+     */
+    @Override
+    public <T> T await(CompletableFuture<T> future) {
+        if (Platform.isFxApplicationThread() && !future.isDone()) {
+            Object loopKey = new Object();
+            future.whenComplete((result, error) -> Platform.runLater(() -> Platform.exitNestedEventLoop(loopKey, null)));
+            Platform.enterNestedEventLoop(loopKey);
+        }
+        return future.join();
+    }
+
+    private String showDialog(String reason, String previousError) {
+        if (previousError != null) {
+            Alert errorDialog = new Alert(Alert.AlertType.ERROR);
+            errorDialog.setTitle("Invalid Password");
+            errorDialog.setHeaderText("Invalid Sudo Password");
+            errorDialog.setContentText(previousError);
+            errorDialog.showAndWait();
+        }
+
+        Alert passwordDialog = new Alert(Alert.AlertType.CONFIRMATION);
+        passwordDialog.setTitle("Sudo Password Required");
+        passwordDialog.setHeaderText("Sudo Password Required");
+        passwordDialog.setContentText("Some scripts require sudo privileges to execute.\n\nReason: " + reason);
+
+        // Create password field
+        PasswordField passwordField = new PasswordField();
+        passwordField.setPromptText("Enter sudo password");
+        passwordField.setPrefColumnCount(20);
+
+        // Create grid pane for layout
+        GridPane gridPane = new GridPane();
+        gridPane.setHgap(10);
+        gridPane.setVgap(10);
+        gridPane.setMaxWidth(Double.MAX_VALUE);
+
+        Text label = new Text("Sudo Password:");
+        gridPane.add(label, 0, 0);
+        gridPane.add(passwordField, 1, 0);
+
+        GridPane.setHgrow(passwordField, Priority.ALWAYS);
+
+        passwordDialog.getDialogPane().setContent(gridPane);
+
+        // Customize buttons
+        ButtonType okButton = new ButtonType("OK");
+        ButtonType cancelButton = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
+        passwordDialog.getButtonTypes().setAll(okButton, cancelButton);
+
+        // Focus on password field
+        Platform.runLater(passwordField::requestFocus);
+
+        Optional<ButtonType> result = passwordDialog.showAndWait();
+        if (result.isPresent() && result.get() == okButton) {
+            String password = passwordField.getText();
+            return password != null ? password : "";
+        }
+        return null;
+    }
+}
@@ -2,13 +2,29 @@ package com.yunfx.autoshell.ui;
 
 import com.jfoenix.controls.*;
 import com.yunfx.autoshell.database.DatabaseManager;
+import com.yunfx.autoshell.database.ScriptCatalog;
+import com.yunfx.autoshell.model.GroupRun;
+import com.yunfx.autoshell.model.ResourceLimits;
 import com.yunfx.autoshell.model.Script;
 import com.yunfx.autoshell.model.ScriptGroup;
+import com.yunfx.autoshell.service.DependencyProbe;
+import com.yunfx.autoshell.service.ExecutionPlanner;
+import com.yunfx.autoshell.service.GroupRunCheckpoint;
+import com.yunfx.autoshell.service.PersistenceService;
+import com.yunfx.autoshell.service.PipelineExecutionService;
+import com.yunfx.autoshell.service.PreflightService;
+import com.yunfx.autoshell.service.ResourceLimiter;
+import com.yunfx.autoshell.service.RunLogStore;
 import com.yunfx.autoshell.service.ScriptDiscoveryService;
 import com.yunfx.autoshell.service.ScriptExecutionService;
 import com.yunfx.autoshell.service.ScriptAnalysisService;
 import com.yunfx.autoshell.service.SudoPasswordManager;
 import com.yunfx.autoshell.service.SudoService;
+import com.yunfx.autoshell.service.TerminalLauncher;
+import com.yunfx.autoshell.service.TmuxSessionService;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -22,24 +38,43 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.ButtonBar;
 import javafx.scene.layout.*;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class MainController {
+    private static final int SEARCH_LIMIT = 1000;
+    
     private Stage primaryStage;
     private DatabaseManager dbManager;
+    private ScriptCatalog catalog;
+    private PersistenceService persistence;
     private ScriptDiscoveryService discoveryService;
     private ScriptExecutionService executionService;
     private SudoService sudoService;
     
     // UI Components
     private JFXTextField searchField;
+    private JFXTextField tagFilterField;
     private JFXComboBox<String> groupFilterCombo;
     private TableView<Script> scriptTable;
     private TableView<ScriptGroup> groupTable;
@@ -48,20 +83,29 @@ public class MainController {
     private JFXButton removeGroupButton;
     private JFXButton executeGroupButton;
     private JFXButton selectDirectoryButton;
+    private JFXButton viewLogsButton;
     private Label statusLabel;
     private ProgressBar progressBar;
     
     // Data
     private ObservableList<Script> scripts;
     private ObservableList<ScriptGroup> groups;
+    private final Map<Path, String> searchSnippets = new HashMap<>();
+    // Incremented by each filter so results of a superseded one are dropped
+    private long filterGeneration;
     private String currentDirectory = "/home/yunfx/SCRIPTS";
     
     public void initialize(Stage stage) {
         this.primaryStage = stage;
         this.dbManager = DatabaseManager.getInstance();
+        this.catalog = dbManager.getCatalog();
+        this.persistence = PersistenceService.getInstance();
         this.discoveryService = new ScriptDiscoveryService();
         this.executionService = new ScriptExecutionService();
         this.sudoService = new SudoService();
+        SudoPasswordManager.getInstance().setPasswordPrompt(new FxPasswordPrompt());
+        TerminalLauncher.getInstance().setLaunchFailureListener(message ->
+            Platform.runLater(() -> showError("Terminal failed to open", message)));
         
         initializeData();
         createUI();
@@ -129,6 +173,13 @@ public class MainController {
         searchField.setStyle("-fx-background-color: #ffffff; -fx-text-fill: #313131; -fx-prompt-text-fill: #666666; -fx-padding: 8 12;");
         searchField.textProperty().addListener((obs, oldVal, newVal) -> filterScripts());
         
+        // Tag filter; scripts must carry every listed tag
+        tagFilterField = new JFXTextField();
+        tagFilterField.setPromptText("Tags, e.g. backup, nightly");
+        tagFilterField.setPrefWidth(180);
+        tagFilterField.setStyle("-fx-background-color: #ffffff; -fx-text-fill: #313131; -fx-prompt-text-fill: #666666; -fx-padding: 8 12;");
+        tagFilterField.textProperty().addListener((obs, oldVal, newVal) -> filterScripts());
+        
         // Refresh button
         refreshButton = new JFXButton("Refresh");
         refreshButton.setStyle("-fx-background-color: #ffffff; -fx-text-fill: #313131; -fx-font-weight: bold; -fx-padding: 8 16;");
@@ -151,9 +202,14 @@ public class MainController {
         executeGroupButton.setOnAction(this::executeSelectedGroup);
         executeGroupButton.setDisable(true);
         
+        // View logs button
+        viewLogsButton = new JFXButton("View Logs");
+        viewLogsButton.setStyle("-fx-background-color: #ffffff; -fx-text-fill: #313131; -fx-font-weight: bold; -fx-padding: 8 16;");
+        viewLogsButton.setOnAction(this::showRunLogs);
+        
         toolbar.getChildren().addAll(
-            selectDirectoryButton, searchField, refreshButton, 
-            addGroupButton, removeGroupButton, executeGroupButton
+            selectDirectoryButton, searchField, tagFilterField, refreshButton, 
+            addGroupButton, removeGroupButton, executeGroupButton, viewLogsButton
         );
         
         return toolbar;
@@ -190,9 +246,26 @@ public class MainController {
         scriptCountCol.setPrefWidth(80);
         scriptCountCol.setStyle("-fx-background-color: #666666; -fx-text-fill: #ffffff; -fx-font-weight: bold;");
         
-        groupTable.getColumns().addAll(groupNameCol, scriptCountCol);
+        TableColumn<ScriptGroup, String> groupTypeCol = new TableColumn<>("Type");
+        groupTypeCol.setCellValueFactory(cellData ->
+            new javafx.beans.property.SimpleStringProperty(cellData.getValue().isPipeline() ? "Pipeline" : "Standard"));
+        groupTypeCol.setPrefWidth(80);
+        groupTypeCol.setStyle("-fx-background-color: #666666; -fx-text-fill: #ffffff; -fx-font-weight: bold;");
+        
+        groupTable.getColumns().addAll(groupNameCol, scriptCountCol, groupTypeCol);
         groupTable.setItems(groups);
         
+        MenuItem groupLimitsItem = new MenuItem("Resource Limits...");
+        groupLimitsItem.setOnAction(e -> {
+            ScriptGroup group = groupTable.getSelectionModel().getSelectedItem();
+            if (group != null && group.getId() == null) {
+                showInfo("Group Not Saved Yet", "The group is still being saved. Please try again in a moment.");
+            } else if (group != null) {
+                editResourceLimits(ResourceLimits.SCOPE_GROUP, String.valueOf(group.getId()), "group " + group.getName());
+            }
+        });
+        groupTable.setContextMenu(new ContextMenu(groupLimitsItem));
+        
         // Group selection listener
         groupTable.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
             if (newVal != null) {
@@ -253,6 +326,20 @@ public class MainController {
         executableCol.setPrefWidth(100);
         executableCol.setStyle("-fx-background-color: #666666; -fx-text-fill: #ffffff; -fx-font-weight: bold;");
         
+        // Where the search text matched, with the matched terms highlighted
+        TableColumn<Script, String> matchCol = new TableColumn<>("Match");
+        matchCol.setCellValueFactory(cellData ->
+            new javafx.beans.property.SimpleStringProperty(searchSnippets.get(cellData.getValue().getFilePath())));
+        matchCol.setPrefWidth(300);
+        matchCol.setStyle("-fx-background-color: #666666; -fx-text-fill: #ffffff; -fx-font-weight: bold;");
+        matchCol.setCellFactory(param -> new TableCell<Script, String>() {
+            @Override
+            protected void updateItem(String snippet, boolean empty) {
+                super.updateItem(snippet, empty);
+                setGraphic(empty || snippet == null ? null : highlightSnippet(snippet));
+            }
+        });
+        
         TableColumn<Script, Void> actionsCol = new TableColumn<>("Actions");
         actionsCol.setPrefWidth(150);
         actionsCol.setStyle("-fx-background-color: #666666; -fx-text-fill: #ffffff; -fx-font-weight: bold;");
@@ -284,13 +371,42 @@ public class MainController {
             }
         });
         
-        scriptTable.getColumns().addAll(nameCol, descriptionCol, pathCol, executableCol, actionsCol);
+        scriptTable.getColumns().addAll(nameCol, descriptionCol, pathCol, executableCol, matchCol, actionsCol);
         scriptTable.setItems(scripts);
         
+        MenuItem scriptLimitsItem = new MenuItem("Resource Limits...");
+        scriptLimitsItem.setOnAction(e -> {
+            Script script = scriptTable.getSelectionModel().getSelectedItem();
+            if (script != null) {
+                editResourceLimits(ResourceLimits.SCOPE_SCRIPT, script.getFilePath().toString(), script.getName());
+            }
+        });
+        scriptTable.setContextMenu(new ContextMenu(scriptLimitsItem));
+        
         scriptPanel.getChildren().addAll(scriptLabel, scriptTable);
         return scriptPanel;
     }
     
+    private static TextFlow highlightSnippet(String snippet) {
+        TextFlow flow = new TextFlow();
+        boolean highlighted = false;
+        StringBuilder part = new StringBuilder();
+        for (char c : (snippet.replace('\n', ' ') + DatabaseManager.HIGHLIGHT_START).toCharArray()) {
+            if (c == DatabaseManager.HIGHLIGHT_START || c == DatabaseManager.HIGHLIGHT_END) {
+                if (part.length() > 0) {
+                    Text text = new Text(part.toString());
+                    text.setStyle(highlighted ? "-fx-font-weight: bold; -fx-fill: #ec503b;" : "-fx-fill: #313131;");
+                    flow.getChildren().add(text);
+                    part.setLength(0);
+                }
+                highlighted = c == DatabaseManager.HIGHLIGHT_START;
+            } else {
+                part.append(c);
+            }
+        }
+        return flow;
+    }
+    
     private HBox createStatusBar() {
         HBox statusBar = new HBox(10);
         statusBar.setAlignment(Pos.CENTER_LEFT);
@@ -313,14 +429,9 @@ public class MainController {
             // Check and install dependencies first
             checkAndInstallDependencies();
             
-            // Load groups from database
-            groups.clear();
-            groups.addAll(dbManager.getAllGroups());
-            
-            // Update group filter combo
-            groupFilterCombo.getItems().clear();
-            groupFilterCombo.getItems().add("All Scripts");
-            groups.forEach(group -> groupFilterCombo.getItems().add(group.getName()));
+            // Load groups in the background and the catalog with them
+            refreshGroups();
+            persistence.query(catalog::getAllScripts);
             
             // Load scripts from current directory
             refreshScripts();
@@ -335,31 +446,13 @@ public class MainController {
         progressBar.setVisible(true);
         progressBar.setProgress(-1);
         
-        // Check Java
-        sudoService.checkDependencyAsync("java").thenAccept(result -> {
-            if (!result.isSuccess()) {
-                Platform.runLater(() -> {
-                    showDependencyInstallDialog("Java", "openjdk-17-jdk");
-                });
-            }
-        });
-        
-        // Check Maven
-        sudoService.checkDependencyAsync("mvn").thenAccept(result -> {
-            if (!result.isSuccess()) {
-                Platform.runLater(() -> {
-                    showDependencyInstallDialog("Maven", "maven");
-                });
-            }
-        });
-        
-        // Check JavaFX
-        sudoService.executeCommandAsync("ls /usr/share/openjfx/lib/").thenAccept(result -> {
-            if (!result.isSuccess()) {
-                Platform.runLater(() -> {
-                    showDependencyInstallDialog("JavaFX", "openjfx");
-                });
-            }
+        // One probe for all dependencies; usually answered from its cache without starting any process
+        sudoService.findMissingDependenciesAsync(DependencyProbe.REQUIRED).thenAccept(missing -> {
+            Platform.runLater(() -> {
+                for (DependencyProbe.Dependency dependency : missing) {
+                    showDependencyInstallDialog(dependency.getName(), dependency.getPackageName());
+                }
+            });
         });
     }
     
@@ -378,19 +471,21 @@ public class MainController {
     }
     
     private void installDependency(String packageName) {
-        statusLabel.setText("Opening terminal for " + packageName + " installation...");
+        statusLabel.setText("Installing " + packageName + " - enter your password in the terminal window that opens");
         progressBar.setVisible(true);
         progressBar.setProgress(-1);
         
+        // Completes when the installation in the terminal has finished
         sudoService.installDependencyAsync(packageName).thenAccept(result -> {
             Platform.runLater(() -> {
                 progressBar.setVisible(false);
                 if (result.isSuccess()) {
-                    statusLabel.setText("Terminal opened for " + packageName + " installation");
-                    showInfo("Terminal Opened", "A terminal window has opened for installing " + packageName + ".\nPlease follow the instructions in the terminal and enter your password when prompted.\n\nThe terminal will close automatically when the installation is complete.");
+                    statusLabel.setText(packageName + " installed");
+                    showInfo("Installation Complete", packageName + " was installed successfully.");
                 } else {
-                    statusLabel.setText("Failed to open terminal for " + packageName);
-                    showError("Terminal Error", "Failed to open terminal for " + packageName + ":\n" + result.getError());
+                    statusLabel.setText("Installation of " + packageName + " failed");
+                    showError("Installation Failed", "Installing " + packageName + " failed:\n" + result.getError() +
+                        "\n\nSee the terminal window for details.");
                 }
             });
         });
@@ -409,89 +504,163 @@ public class MainController {
     }
     
     private void refreshScripts() {
-        try {
-            statusLabel.setText("Discovering scripts...");
-            progressBar.setVisible(true);
-            progressBar.setProgress(-1); // Indeterminate progress
-            
-            List<Script> discoveredScripts = discoveryService.discoverScripts(currentDirectory);
-            
-            // Save scripts to database
-            for (Script script : discoveredScripts) {
-                dbManager.saveScript(script);
+        statusLabel.setText("Discovering scripts...");
+        progressBar.setVisible(true);
+        progressBar.setProgress(-1); // Indeterminate progress
+        
+        String directory = currentDirectory;
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return discoveryService.discoverScripts(directory);
+            } catch (IOException e) {
+                throw new CompletionException(e);
             }
+        }).thenCompose(discoveredScripts -> {
+            // Shown right away; the database catches up in the background
+            Platform.runLater(() -> {
+                scripts.setAll(discoveredScripts);
+                statusLabel.setText("Found " + discoveredScripts.size() + " scripts, saving...");
+            });
             
-            scripts.clear();
-            scripts.addAll(discoveredScripts);
-            
-            statusLabel.setText("Found " + scripts.size() + " scripts");
-            progressBar.setVisible(false);
-            
-        } catch (Exception e) {
-            showError("Error discovering scripts", e.getMessage());
-            statusLabel.setText("Error discovering scripts");
-            progressBar.setVisible(false);
-        }
+            // Save scripts to database in one transaction, dropping or relinking the ones that are gone
+            return persistence.syncScripts(Paths.get(directory), discoveredScripts).thenAccept(reconciled -> Platform.runLater(() -> {
+                String status = "Found " + discoveredScripts.size() + " scripts";
+                if (reconciled.getMoved() > 0 || reconciled.getRemoved() > 0) {
+                    status += " (" + reconciled.getMoved() + " moved, " + reconciled.getRemoved() + " removed)";
+                    refreshGroups();
+                }
+                statusLabel.setText(status);
+                progressBar.setVisible(false);
+            }));
+        }).exceptionally(e -> {
+            Platform.runLater(() -> {
+                showError("Error discovering scripts", errorMessage(e));
+                statusLabel.setText("Error discovering scripts");
+                progressBar.setVisible(false);
+            });
+            return null;
+        });
     }
     
     private void refreshGroups() {
-        try {
-            // Reload groups from database
-            groups.clear();
-            groups.addAll(dbManager.getAllGroups());
+        // Reload groups from database
+        persistence.query(dbManager::getAllGroups).whenComplete((loaded, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                showError("Error refreshing groups", errorMessage(error));
+                return;
+            }
+            String selected = groupFilterCombo.getValue();
+            groups.setAll(loaded);
             
             // Update group filter combo
             groupFilterCombo.getItems().clear();
             groupFilterCombo.getItems().add("All Scripts");
             groups.forEach(group -> groupFilterCombo.getItems().add(group.getName()));
-            
-        } catch (Exception e) {
-            showError("Error refreshing groups", e.getMessage());
+            if (selected != null && groupFilterCombo.getItems().contains(selected)) {
+                groupFilterCombo.setValue(selected);
+            }
+        }));
+    }
+    
+    /**
+     * @return The message of the error a background task failed with
+     */
+    private static String errorMessage(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
         }
+        return error.getMessage();
+    }
+    
+    /**
+     * The scripts a filter selected, with search snippets keyed by path
+     */
+    private static class FilterResult {
+        private final List<Script> scripts = new ArrayList<>();
+        private final Map<Path, String> snippets = new HashMap<>();
     }
     
     private void filterScripts() {
-        String searchText = searchField.getText().toLowerCase();
+        String searchText = searchField.getText().trim();
         String selectedGroup = groupFilterCombo.getValue();
+        List<String> tagFilter = new ArrayList<>();
+        for (String tag : tagFilterField.getText().split(",")) {
+            if (!tag.isBlank()) {
+                tagFilter.add(tag.trim());
+            }
+        }
         
-        scripts.clear();
+        boolean allScripts = selectedGroup == null || selectedGroup.equals("All Scripts");
+        ScriptGroup selectedGroupObj = null;
+        if (!allScripts) {
+            // Find the selected group
+            for (ScriptGroup group : groups) {
+                if (group.getName().equals(selectedGroup)) {
+                    selectedGroupObj = group;
+                    break;
+                }
+            }
+        }
+        Long groupId = selectedGroupObj == null ? null : selectedGroupObj.getId();
         
-        try {
-            List<Script> scriptsToShow;
-            
-            if (selectedGroup == null || selectedGroup.equals("All Scripts")) {
-                // Show all scripts
-                scriptsToShow = dbManager.getAllScripts();
-            } else {
-                // Find the selected group and get its scripts
-                ScriptGroup selectedGroupObj = null;
-                for (ScriptGroup group : groups) {
-                    if (group.getName().equals(selectedGroup)) {
-                        selectedGroupObj = group;
-                        break;
-                    }
+        // Catalog and search run in the background; only the latest filter is shown
+        long generation = ++filterGeneration;
+        persistence.query(() -> findScripts(searchText, allScripts, groupId, tagFilter))
+            .whenComplete((result, error) -> Platform.runLater(() -> {
+                if (generation != filterGeneration) {
+                    return;
                 }
-                
-                if (selectedGroupObj != null) {
-                    // Get scripts for this specific group from database
-                    scriptsToShow = dbManager.getScriptsByGroup(selectedGroupObj.getId());
-                } else {
-                    scriptsToShow = new ArrayList<>();
+                if (error != null) {
+                    showError("Error filtering scripts", errorMessage(error));
+                    return;
                 }
+                searchSnippets.clear();
+                searchSnippets.putAll(result.snippets);
+                scripts.setAll(result.scripts);
+            }));
+    }
+    
+    private FilterResult findScripts(String searchText, boolean allScripts, Long groupId, List<String> tagFilter) throws SQLException {
+        FilterResult result = new FilterResult();
+        if (!searchText.isEmpty()) {
+            if (allScripts || groupId != null) {
+                search(searchText, allScripts ? null : groupId, tagFilter, result);
             }
-            
-            // Apply search filter
-            for (Script script : scriptsToShow) {
-                boolean matchesSearch = searchText.isEmpty() || 
-                    script.getName().toLowerCase().contains(searchText) ||
-                    script.getDescription().toLowerCase().contains(searchText);
-                
-                if (matchesSearch) {
-                    scripts.add(script);
-                }
+            return result;
+        }
+        
+        List<Script> scriptsToShow;
+        
+        if (allScripts) {
+            // Show all scripts, narrowed down by the tag index
+            scriptsToShow = catalog.findScriptsByTags(tagFilter);
+        } else if (groupId != null) {
+            // Get scripts for this specific group from the catalog
+            scriptsToShow = catalog.getScriptsByGroup(groupId);
+            if (!tagFilter.isEmpty()) {
+                Set<Path> tagged = new HashSet<>();
+                catalog.findScriptsByTags(tagFilter).forEach(script -> tagged.add(script.getFilePath()));
+                scriptsToShow.removeIf(script -> !tagged.contains(script.getFilePath()));
             }
-        } catch (Exception e) {
-            showError("Error filtering scripts", e.getMessage());
+        } else {
+            // Unknown or not yet saved groups have no scripts
+            scriptsToShow = new ArrayList<>();
+        }
+        
+        result.scripts.addAll(scriptsToShow);
+        return result;
+    }
+    
+    /**
+     * Full-text search over names, descriptions, tags and bodies, best matches first.
+     * The group and tags narrow the search itself, before its limit
+     */
+    private void search(String searchText, Long groupId, List<String> tagFilter, FilterResult result) throws SQLException {
+        for (DatabaseManager.SearchHit hit : dbManager.searchScripts(searchText, groupId, tagFilter, SEARCH_LIMIT)) {
+            Path path = hit.getScript().getFilePath();
+            result.snippets.put(path, hit.getSnippet());
+            Script cached = catalog.getScript(path.toString());
+            result.scripts.add(cached != null ? cached : hit.getScript());
         }
     }
     
@@ -501,17 +670,31 @@ public class MainController {
         dialog.setHeaderText("Create a new script group");
         dialog.setContentText("Group name:");
         
+        // Pipeline groups connect each script's stdout to the next script's stdin
+        CheckBox pipelineCheckBox = new CheckBox("Pipeline (stdout \u2192 stdin, in the order scripts are added)");
+        GridPane dialogContent = (GridPane) dialog.getDialogPane().getContent();
+        dialogContent.add(pipelineCheckBox, 0, 1, 2, 1);
+        
         Optional<String> result = dialog.showAndWait();
         if (result.isPresent() && !result.get().trim().isEmpty()) {
-            try {
-                ScriptGroup group = new ScriptGroup(result.get().trim());
-                dbManager.saveGroup(group);
-                groups.add(group);
-                groupFilterCombo.getItems().add(group.getName());
-                statusLabel.setText("Group created: " + group.getName());
-            } catch (Exception e) {
-                showError("Error creating group", e.getMessage());
+            ScriptGroup group = new ScriptGroup(result.get().trim());
+            if (pipelineCheckBox.isSelected()) {
+                group.setType(ScriptGroup.Type.PIPELINE);
             }
+            // Shown at once and taken back if saving fails
+            groups.add(group);
+            groupFilterCombo.getItems().add(group.getName());
+            statusLabel.setText("Group created: " + group.getName());
+            // The id is set here on the FX thread, which owns the group
+            persistence.saveGroup(group).whenComplete((id, error) -> Platform.runLater(() -> {
+                if (error != null) {
+                    groups.remove(group);
+                    groupFilterCombo.getItems().remove(group.getName());
+                    showError("Error creating group", errorMessage(error));
+                    return;
+                }
+                group.setId(id);
+            }));
         }
     }
     
@@ -544,30 +727,126 @@ public class MainController {
         
         Optional<ButtonType> result = confirmDialog.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            try {
-                // Remove group from database
-                dbManager.removeGroup(selectedGroup.getId());
-                
-                // Remove from UI
-                groups.remove(selectedGroup);
-                
-                // Update group filter combo
-                groupFilterCombo.getItems().remove(selectedGroupName);
-                groupFilterCombo.setValue("All Scripts");
-                
-                // Clear selection and refresh
-                groupTable.getSelectionModel().clearSelection();
-                filterScripts();
-                
-                // Disable buttons
-                executeGroupButton.setDisable(true);
-                removeGroupButton.setDisable(true);
-                
-                statusLabel.setText("Group removed: " + selectedGroup.getName());
-                
-            } catch (Exception e) {
-                showError("Error removing group", e.getMessage());
+            // Remove from UI; the database follows in the background
+            ScriptGroup removedGroup = selectedGroup;
+            groups.remove(removedGroup);
+            
+            // Update group filter combo
+            groupFilterCombo.getItems().remove(selectedGroupName);
+            groupFilterCombo.setValue("All Scripts");
+            
+            // Clear selection and refresh
+            groupTable.getSelectionModel().clearSelection();
+            filterScripts();
+            
+            // Disable buttons
+            executeGroupButton.setDisable(true);
+            removeGroupButton.setDisable(true);
+            
+            statusLabel.setText("Group removed: " + removedGroup.getName());
+            
+            persistence.removeGroup(removedGroup).exceptionally(e -> {
+                Platform.runLater(() -> {
+                    // Put the group back
+                    groups.add(removedGroup);
+                    groupFilterCombo.getItems().add(removedGroup.getName());
+                    showError("Error removing group", errorMessage(e));
+                });
+                return null;
+            });
+        }
+    }
+    
+    private void editResourceLimits(String scope, String scopeKey, String displayName) {
+        persistence.query(() -> dbManager.getResourceLimits(scope, scopeKey))
+            .whenComplete((current, error) -> Platform.runLater(() -> {
+                if (error != null) {
+                    showError("Error loading resource limits", errorMessage(error));
+                } else {
+                    showResourceLimitsDialog(scope, scopeKey, displayName, current == null ? new ResourceLimits() : current);
+                }
+            }));
+    }
+    
+    private void showResourceLimitsDialog(String scope, String scopeKey, String displayName, ResourceLimits current) {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Resource Limits");
+        dialog.setHeaderText("Resource limits for " + displayName + "\nLeave a field empty for no limit." +
+            (ResourceLimits.SCOPE_GROUP.equals(scope) ? "\nScripts with their own limits override these." : ""));
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        
+        TextField cpuField = new TextField(toText(current.getCpuSeconds()));
+        TextField addressSpaceField = new TextField(toText(current.getAddressSpaceMb()));
+        TextField openFilesField = new TextField(toText(current.getOpenFiles()));
+        TextField niceField = new TextField(toText(current.getNiceLevel()));
+        ComboBox<String> ioClassCombo = new ComboBox<>(FXCollections.observableArrayList(
+            "default", ResourceLimits.IO_CLASS_BEST_EFFORT, ResourceLimits.IO_CLASS_IDLE));
+        ioClassCombo.setValue(current.getIoClass() == null ? "default" : current.getIoClass());
+        TextField memoryField = new TextField(toText(current.getMemoryMb()));
+        TextField cpuQuotaField = new TextField(toText(current.getCpuQuotaPercent()));
+        
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(8);
+        grid.addRow(0, new Label("CPU time (seconds):"), cpuField);
+        grid.addRow(1, new Label("Address space (MB):"), addressSpaceField);
+        grid.addRow(2, new Label("Open files:"), openFilesField);
+        grid.addRow(3, new Label("Nice level (0-19):"), niceField);
+        grid.addRow(4, new Label("I/O class:"), ioClassCombo);
+        grid.addRow(5, new Label("Memory (MB):"), memoryField);
+        grid.addRow(6, new Label("CPU quota (%):"), cpuQuotaField);
+        if (!ResourceLimiter.getInstance().isCgroupDelegated()) {
+            Label cgroupNote = new Label("Memory and CPU quota need a delegated cgroup v2 hierarchy,\n" +
+                "which is not available on this system; they will not be applied.");
+            grid.add(cgroupNote, 0, 7, 2, 1);
+        }
+        dialog.getDialogPane().setContent(grid);
+        
+        Optional<ButtonType> result = dialog.showAndWait();
+        if (result.isEmpty() || result.get() != ButtonType.OK) {
+            return;
+        }
+        
+        try {
+            ResourceLimits limits = new ResourceLimits();
+            limits.setCpuSeconds(parseLimit(cpuField.getText(), "CPU time", 1, Long.MAX_VALUE));
+            limits.setAddressSpaceMb(parseLimit(addressSpaceField.getText(), "Address space", 1, Long.MAX_VALUE));
+            limits.setOpenFiles(parseLimit(openFilesField.getText(), "Open files", 1, Long.MAX_VALUE));
+            Long nice = parseLimit(niceField.getText(), "Nice level", 0, 19);
+            limits.setNiceLevel(nice == null ? null : nice.intValue());
+            limits.setIoClass("default".equals(ioClassCombo.getValue()) ? null : ioClassCombo.getValue());
+            limits.setMemoryMb(parseLimit(memoryField.getText(), "Memory", 1, Long.MAX_VALUE));
+            Long cpuQuota = parseLimit(cpuQuotaField.getText(), "CPU quota", 1, 100L * Runtime.getRuntime().availableProcessors());
+            limits.setCpuQuotaPercent(cpuQuota == null ? null : cpuQuota.intValue());
+            
+            statusLabel.setText(limits.isEmpty()
+                ? "Resource limits removed for " + displayName
+                : "Resource limits saved for " + displayName);
+            persistence.saveResourceLimits(scope, scopeKey, limits).exceptionally(e -> {
+                Platform.runLater(() -> showError("Error saving resource limits", errorMessage(e)));
+                return null;
+            });
+        } catch (IllegalArgumentException e) {
+            showError("Invalid Resource Limit", e.getMessage());
+        }
+    }
+    
+    private static String toText(Number value) {
+        return value == null ? "" : value.toString();
+    }
+    
+    private static Long parseLimit(String text, String name, long min, long max) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            long value = Long.parseLong(text.trim());
+            if (value < min || value > max) {
+                throw new IllegalArgumentException(name + " must be between " + min + " and " + max + ".");
             }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a whole number.");
         }
     }
     
@@ -584,23 +863,27 @@ public class MainController {
         
         Optional<ScriptGroup> result = dialog.showAndWait();
         if (result.isPresent()) {
-            try {
-                ScriptGroup group = result.get();
-                group.addScript(script);
-                dbManager.saveGroup(group);
-                dbManager.addScriptToGroup(group.getId(), script.getFilePath().toString());
-                
-                // Refresh the groups to show updated script count
-                refreshGroups();
-                
-                // Update the group filter to show the updated group
+            ScriptGroup group = result.get();
+            boolean added = !group.containsScript(script);
+            group.addScript(script);
+            
+            // Show the updated script count
+            groupTable.refresh();
+            
+            // Update the group filter to show the updated group once the catalog has the script
+            persistence.addScriptToGroup(group, script.getFilePath().toString()).whenComplete((ignored, error) -> Platform.runLater(() -> {
+                if (error != null) {
+                    if (added) {
+                        group.removeScript(script);
+                        groupTable.refresh();
+                    }
+                    showError("Error adding script to group", errorMessage(error));
+                    return;
+                }
                 groupFilterCombo.setValue(group.getName());
                 filterScripts();
-                
-                statusLabel.setText("Script added to group: " + group.getName());
-            } catch (Exception e) {
-                showError("Error adding script to group", e.getMessage());
-            }
+            }));
+            statusLabel.setText("Script added to group: " + group.getName());
         }
     }
     
@@ -746,34 +1029,84 @@ public class MainController {
             showInfo("Group Not Found", "The selected group could not be found.");
             return;
         }
+        if (selectedGroup.getId() == null) {
+            showInfo("Group Not Saved Yet", "The group is still being saved. Please try again in a moment.");
+            return;
+        }
         
-        // Get scripts for this group from database
+        // Load the group's scripts and its last unfinished run in the background
+        ScriptGroup group = selectedGroup;
+        persistence.query(() -> catalog.getScriptsByGroup(group.getId()))
+            .thenCombine(persistence.query(() -> dbManager.getResumableGroupRun(group.getId())),
+                (groupScripts, resumableRun) -> {
+                    Platform.runLater(() -> confirmGroupExecution(group, groupScripts, resumableRun));
+                    return null;
+                })
+            .exceptionally(e -> {
+                Platform.runLater(() -> showError("Error loading group scripts", errorMessage(e)));
+                return null;
+            });
+    }
+    
+    private void confirmGroupExecution(ScriptGroup selectedGroup, List<Script> groupScripts, GroupRun resumableRun) {
         try {
-            List<Script> groupScripts = dbManager.getScriptsByGroup(selectedGroup.getId());
             if (groupScripts.isEmpty()) {
                 showInfo("Empty Group", "The selected group contains no scripts.");
                 return;
             }
             
+            if (selectedGroup.isPipeline()) {
+                confirmPipelineExecution(selectedGroup, groupScripts);
+                return;
+            }
+            
             // Create custom dialog with execution choice
             Alert executionChoiceDialog = new Alert(Alert.AlertType.CONFIRMATION);
             executionChoiceDialog.setTitle("Execute Group");
             executionChoiceDialog.setHeaderText("Execute all scripts in group: " + selectedGroup.getName());
             executionChoiceDialog.setContentText("This will execute " + groupScripts.size() + " scripts sequentially.\n\nHow would you like to execute them?");
             
+            // Scripts declaring inputs/outputs are skipped when unchanged unless forced
+            CheckBox forceRunCheckBox = new CheckBox("Force re-run of scripts whose inputs are unchanged");
+            VBox dialogContent = new VBox(10, new Label(executionChoiceDialog.getContentText()), forceRunCheckBox);
+            
+            // Offer to continue the last run if it failed or was interrupted
+            CheckBox resumeCheckBox = new CheckBox();
+            if (resumableRun != null) {
+                resumeCheckBox.setText("Resume the run from " + resumableRun.getStartedAt().toLocalDate() + " " +
+                    resumableRun.getStartedAt().toLocalTime().withNano(0) + " (" + resumableRun.getSucceededSteps() +
+                    " of " + resumableRun.getStepStatuses().size() + " scripts succeeded)");
+                resumeCheckBox.setSelected(true);
+                dialogContent.getChildren().add(resumeCheckBox);
+            }
+            executionChoiceDialog.getDialogPane().setContent(dialogContent);
+            
             // Create custom buttons
             ButtonType guiButton = new ButtonType("GUI (Background)");
             ButtonType terminalButton = new ButtonType("Terminal Windows");
+            ButtonType logButton = new ButtonType("Log Files (Unattended)");
+            ButtonType tmuxButton = new ButtonType("tmux Session");
             ButtonType cancelButton = new ButtonType("Cancel", ButtonBar.ButtonData.CANCEL_CLOSE);
             
-            executionChoiceDialog.getButtonTypes().setAll(guiButton, terminalButton, cancelButton);
+            executionChoiceDialog.getButtonTypes().setAll(guiButton, terminalButton, logButton, cancelButton);
+            TmuxSessionService tmuxService = new TmuxSessionService();
+            if (tmuxService.isAvailable()) {
+                // One terminal for the whole group instead of a window per script
+                executionChoiceDialog.getButtonTypes().add(2, tmuxButton);
+            }
             
             Optional<ButtonType> result = executionChoiceDialog.showAndWait();
             if (result.isPresent()) {
+                boolean forceRun = forceRunCheckBox.isSelected();
+                boolean resume = resumeCheckBox.isSelected();
                 if (result.get() == guiButton) {
-                    executeGroupSequentially(selectedGroup, false);
+                    executeGroupInGUI(selectedGroup, false, forceRun, resume);
                 } else if (result.get() == terminalButton) {
-                    executeGroupSequentially(selectedGroup, true);
+                    executeGroupInTerminals(selectedGroup);
+                } else if (result.get() == logButton) {
+                    executeGroupInGUI(selectedGroup, true, forceRun, resume);
+                } else if (result.get() == tmuxButton) {
+                    executeGroupInTmux(selectedGroup, tmuxService);
                 }
             }
         } catch (Exception e) {
@@ -781,15 +1114,7 @@ public class MainController {
         }
     }
     
-    private void executeGroupSequentially(ScriptGroup group, boolean useTerminal) {
-        if (useTerminal) {
-            executeGroupInTerminals(group);
-        } else {
-            executeGroupInGUI(group);
-        }
-    }
-    
-    private void executeGroupInGUI(ScriptGroup group) {
+    private void executeGroupInGUI(ScriptGroup group, boolean logToFiles, boolean forceRun, boolean resume) {
         statusLabel.setText("Analyzing group: " + group.getName());
         progressBar.setVisible(true);
         progressBar.setProgress(-1);
@@ -797,8 +1122,8 @@ public class MainController {
         // Execute in a separate thread to avoid blocking UI
         new Thread(() -> {
             try {
-                // Get scripts for this group from database
-                List<Script> scripts = dbManager.getScriptsByGroup(group.getId());
+                // Get scripts for this group from the catalog
+                List<Script> scripts = catalog.getScriptsByGroup(group.getId());
                 
                 // Analyze scripts for sudo requirements
                 ScriptAnalysisService analysisService = new ScriptAnalysisService();
@@ -825,6 +1150,10 @@ public class MainController {
                     }
                 }
                 
+                if (!passesPreflight(scripts)) {
+                    return;
+                }
+                
                 Platform.runLater(() -> {
                     statusLabel.setText("Executing group: " + group.getName() + 
                         " (" + analysis.getSudoRequired() + " with sudo, " + analysis.getNonSudo() + " without)");
@@ -832,39 +1161,91 @@ public class MainController {
                 
                 int successCount = 0;
                 int failCount = 0;
+                int skippedCount = 0;
                 
-                for (int i = 0; i < scripts.size(); i++) {
-                    final Script script = scripts.get(i);
-                    final int currentIndex = i;
-                    
-                    Platform.runLater(() -> {
-                        statusLabel.setText("Executing script " + (currentIndex + 1) + " of " + scripts.size() + ": " + script.getName());
-                    });
-                    
-                    ScriptExecutionService.ExecutionResult result = executionService.executeScriptWithSudo(script);
-                    
-                    if (result.isSuccess()) {
-                        successCount++;
-                    } else {
-                        failCount++;
+                ResourceLimits groupLimits = ResourceLimiter.getInstance().groupLimits(group.getId());
+                
+                // Step states are persisted so a failed or interrupted run can be resumed
+                GroupRunCheckpoint checkpoint = GroupRunCheckpoint.begin(group, scripts, resume);
+                
+                // Progress is weighted by each script's expected duration from its run history
+                ExecutionPlanner.Plan plan = new ExecutionPlanner().plan(scripts);
+                long totalEstimate = 0;
+                for (Script script : scripts) {
+                    if (!checkpoint.isCompleted(script)) {
+                        totalEstimate += plan.getEstimate(script).getP50Ms();
                     }
-                    
-                    // Small delay between executions
-                    Thread.sleep(500);
                 }
+                ExecutionPlanner.ProgressTracker progress = new ExecutionPlanner.ProgressTracker(totalEstimate);
+                Timeline progressTicker = new Timeline(new KeyFrame(javafx.util.Duration.millis(500), e -> {
+                    progressBar.setProgress(progress.getProgress());
+                    statusLabel.setText(progress.getCurrentLabel() + " - about " +
+                        ExecutionPlanner.formatDuration(progress.getRemainingMs()) + " left");
+                }));
+                progressTicker.setCycleCount(Animation.INDEFINITE);
+                Platform.runLater(progressTicker::play);
+                
+                // Keeps sudo authenticated until the last privileged script has run
+                SudoPasswordManager.KeepAlive keepAlive = analysis.hasSudoScripts()
+                    ? SudoPasswordManager.getInstance().keepAlive()
+                    : null;
+                try {
+                    for (int i = 0; i < scripts.size(); i++) {
+                        final Script script = scripts.get(i);
+                        
+                        if (checkpoint.isCompleted(script)) {
+                            skippedCount++;
+                            continue;
+                        }
+                        
+                        progress.stepStarted("Executing script " + (i + 1) + " of " + scripts.size() + ": " + script.getName(),
+                            plan.getEstimate(script).getP50Ms());
+                        
+                        checkpoint.stepStarted(script);
+                        ScriptExecutionService.ExecutionResult result = 
+                            executionService.executeIfChanged(script, forceRun, logToFiles, groupLimits);
+                        checkpoint.stepFinished(script, result);
+                        progress.stepFinished();
+                        
+                        if (result.isSkipped()) {
+                            skippedCount++;
+                            continue;
+                        }
+                        
+                        if (result.isSuccess()) {
+                            successCount++;
+                        } else {
+                            failCount++;
+                        }
+                        
+                        // Small delay between executions
+                        Thread.sleep(500);
+                    }
+                } finally {
+                    Platform.runLater(progressTicker::stop);
+                    if (keepAlive != null) {
+                        keepAlive.close();
+                    }
+                }
+                checkpoint.finish();
                 
                 final int finalSuccessCount = successCount;
                 final int finalFailCount = failCount;
+                final int finalSkippedCount = skippedCount;
                 
                 Platform.runLater(() -> {
                     progressBar.setVisible(false);
                     statusLabel.setText("Group execution completed: " + group.getName() + 
-                        " (" + finalSuccessCount + " successful, " + finalFailCount + " failed)");
+                        " (" + finalSuccessCount + " successful, " + finalFailCount + " failed, " + 
+                        finalSkippedCount + " skipped)");
                     
                     if (finalFailCount > 0) {
                         showInfo("Group Execution Summary", 
                             "Group execution completed with " + finalSuccessCount + " successful executions and " + 
-                            finalFailCount + " failures.\n\nCheck the status messages for details about any failures.");
+                            finalFailCount + " failures.\n\n" + (logToFiles 
+                                ? "Use View Logs to inspect the output of the failed scripts."
+                                : "Check the status messages for details about any failures.") +
+                            "\n\nExecute the group again to resume from the first failed script.");
                     }
                 });
                 
@@ -878,6 +1259,96 @@ public class MainController {
         }).start();
     }
     
+    /**
+     * Checks the syntax of all scripts before a group starts. Called from a worker thread.
+     * @return true if the group may run; otherwise the problems have been shown to the user
+     */
+    private boolean passesPreflight(List<Script> scripts) {
+        Platform.runLater(() -> statusLabel.setText("Checking " + scripts.size() + " scripts for syntax errors..."));
+        PreflightService.PreflightResult preflight = new PreflightService().check(scripts);
+        if (preflight.isPassed()) {
+            return true;
+        }
+        
+        Platform.runLater(() -> {
+            progressBar.setVisible(false);
+            statusLabel.setText("Group not started - " + preflight.getIssues().size() + " scripts failed the pre-flight check");
+            showError("Pre-flight Check Failed", preflight.describeIssues());
+        });
+        return false;
+    }
+    
+    private void confirmPipelineExecution(ScriptGroup group, List<Script> stages) {
+        StringBuilder chain = new StringBuilder();
+        for (Script stage : stages) {
+            if (chain.length() > 0) {
+                chain.append(" | ");
+            }
+            chain.append(stage.getName());
+        }
+        
+        Alert confirmDialog = new Alert(Alert.AlertType.CONFIRMATION);
+        confirmDialog.setTitle("Execute Pipeline");
+        confirmDialog.setHeaderText("Execute pipeline group: " + group.getName());
+        confirmDialog.setContentText(chain + "\n\nThe output of the last script is written to a log file.");
+        
+        Optional<ButtonType> result = confirmDialog.showAndWait();
+        if (result.isPresent() && result.get() == ButtonType.OK) {
+            executePipelineGroup(group, stages);
+        }
+    }
+    
+    private void executePipelineGroup(ScriptGroup group, List<Script> stages) {
+        statusLabel.setText("Executing pipeline: " + group.getName());
+        progressBar.setVisible(true);
+        progressBar.setProgress(-1);
+        
+        new Thread(() -> {
+            ScriptAnalysisService.AnalysisResult analysis = new ScriptAnalysisService().analyzeScripts(stages);
+            if (analysis.hasSudoScripts()) {
+                boolean passwordObtained = SudoPasswordManager.getInstance().requestSudoPassword(
+                    "Pipeline '" + group.getName() + "' contains " + analysis.getSudoRequired() +
+                    " scripts that require sudo privileges");
+                if (!passwordObtained) {
+                    Platform.runLater(() -> {
+                        progressBar.setVisible(false);
+                        statusLabel.setText("Pipeline execution cancelled - sudo password required");
+                    });
+                    return;
+                }
+            }
+            
+            if (!passesPreflight(stages)) {
+                return;
+            }
+            
+            PipelineExecutionService.PipelineResult result =
+                new PipelineExecutionService().executePipeline(group.getName(), stages,
+                    ResourceLimiter.getInstance().groupLimits(group.getId()));
+            
+            StringBuilder summary = new StringBuilder();
+            for (int i = 0; i < result.getStageResults().size(); i++) {
+                ScriptExecutionService.ExecutionResult stageResult = result.getStageResults().get(i);
+                summary.append(stages.get(i).getName())
+                    .append(": exit ").append(stageResult.getExitCode())
+                    .append(" after ").append(stageResult.getExecutionTimeMs()).append(" ms\n");
+            }
+            if (result.getError() != null) {
+                summary.append("\n").append(result.getError()).append("\n");
+            }
+            if (result.getOutputLog() != null) {
+                summary.append("\nOutput: ").append(result.getOutputLog());
+            }
+            
+            Platform.runLater(() -> {
+                progressBar.setVisible(false);
+                statusLabel.setText("Pipeline " + (result.isSuccess() ? "completed: " : "failed: ") + group.getName() +
+                    " (" + result.getExecutionTimeMs() + " ms)");
+                showInfo("Pipeline Execution Summary", summary.toString());
+            });
+        }).start();
+    }
+    
     private void executeGroupInTerminals(ScriptGroup group) {
         statusLabel.setText("Analyzing group: " + group.getName());
         progressBar.setVisible(true);
@@ -886,8 +1357,8 @@ public class MainController {
         // Execute in a separate thread to avoid blocking UI
         new Thread(() -> {
             try {
-                // Get scripts for this group from database
-                List<Script> scripts = dbManager.getScriptsByGroup(group.getId());
+                // Get scripts for this group from the catalog
+                List<Script> scripts = catalog.getScriptsByGroup(group.getId());
                 
                 // Analyze scripts for sudo requirements
                 ScriptAnalysisService analysisService = new ScriptAnalysisService();
@@ -914,6 +1385,10 @@ public class MainController {
                     }
                 }
                 
+                if (!passesPreflight(scripts)) {
+                    return;
+                }
+                
                 Platform.runLater(() -> {
                     statusLabel.setText("Opening terminals for group: " + group.getName() + 
                         " (" + analysis.getSudoRequired() + " with sudo, " + analysis.getNonSudo() + " without)");
@@ -937,14 +1412,6 @@ public class MainController {
                     } else {
                         failCount[0]++;
                     }
-                    
-                    // Small delay between opening terminals
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
                 }
                 
                 final int finalSuccessCount = successCount[0];
@@ -972,6 +1439,135 @@ public class MainController {
         }).start();
     }
     
+    private void executeGroupInTmux(ScriptGroup group, TmuxSessionService tmuxService) {
+        statusLabel.setText("Starting tmux session for group: " + group.getName());
+        progressBar.setVisible(true);
+        progressBar.setProgress(-1);
+        
+        new Thread(() -> {
+            try {
+                List<Script> scripts = catalog.getScriptsByGroup(group.getId());
+                if (!passesPreflight(scripts)) {
+                    return;
+                }
+                
+                try (TmuxSessionService.TmuxRun run = tmuxService.launchGroup(group.getName(), scripts)) {
+                    try {
+                        tmuxService.attach(run, "AutoShell - " + group.getName());
+                    } catch (IOException e) {
+                        String attach = String.join(" ", run.getAttachCommand());
+                        Platform.runLater(() -> showInfo("tmux Session Started",
+                            "No terminal emulator could be opened (" + e.getMessage() + ").\n\nAttach with:\n" + attach));
+                    }
+                    
+                    // Each window's run is recorded as soon as its status file appears
+                    LocalDateTime startedAt = LocalDateTime.now();
+                    run.getExitCodes().forEach((script, exitCode) -> exitCode.thenAccept(code -> {
+                        try {
+                            dbManager.recordRun(script.getFilePath().toString(), startedAt,
+                                System.currentTimeMillis() - run.getStartedAt(), code, code == 0, null);
+                        } catch (Exception e) {
+                            System.err.println("Failed to record run of " + script.getName() + ": " + e.getMessage());
+                        }
+                    }));
+                    
+                    // Follow the windows' exit codes until all scripts finish or the session is closed
+                    int total = scripts.size();
+                    while (run.getFinishedCount() < total) {
+                        int finished = run.getFinishedCount();
+                        Platform.runLater(() -> {
+                            progressBar.setProgress((double) finished / total);
+                            statusLabel.setText("tmux session " + run.getSessionName() + ": " + finished + " of " + total + " scripts finished");
+                        });
+                        try {
+                            CompletableFuture.anyOf(run.getExitCodes().values().stream()
+                                    .filter(future -> !future.isDone())
+                                    .toArray(CompletableFuture[]::new))
+                                .get(5, TimeUnit.SECONDS);
+                        } catch (TimeoutException e) {
+                            if (!run.isSessionAlive()) {
+                                break;
+                            }
+                        }
+                    }
+                    
+                    int successCount = 0;
+                    int failCount = 0;
+                    StringBuilder unfinished = new StringBuilder();
+                    for (Map.Entry<Script, CompletableFuture<Integer>> entry : run.getExitCodes().entrySet()) {
+                        Integer exitCode = entry.getValue().getNow(null);
+                        if (exitCode == null) {
+                            unfinished.append("\n").append(entry.getKey().getName());
+                        } else if (exitCode == 0) {
+                            successCount++;
+                        } else {
+                            failCount++;
+                        }
+                    }
+                    
+                    final int finalSuccessCount = successCount;
+                    final int finalFailCount = failCount;
+                    final String finalUnfinished = unfinished.toString();
+                    Platform.runLater(() -> {
+                        progressBar.setVisible(false);
+                        statusLabel.setText("tmux session finished: " + group.getName() + " (" + finalSuccessCount +
+                            " successful, " + finalFailCount + " failed)");
+                        if (finalFailCount > 0 || !finalUnfinished.isEmpty()) {
+                            showInfo("Group Execution Summary", "tmux session " + run.getSessionName() + " finished with " +
+                                finalSuccessCount + " successful and " + finalFailCount + " failed scripts." +
+                                (finalUnfinished.isEmpty() ? "" : "\n\nThe session was closed before these scripts finished:" + finalUnfinished));
+                        }
+                    });
+                }
+            } catch (Exception e) {
+                Platform.runLater(() -> {
+                    progressBar.setVisible(false);
+                    statusLabel.setText("Error starting tmux session: " + e.getMessage());
+                    showError("tmux Session Error", e.getMessage());
+                });
+            }
+        }).start();
+    }
+    
+    private void showRunLogs(ActionEvent event) {
+        RunLogStore logStore = RunLogStore.getInstance();
+        List<Path> logs = logStore.listLogs();
+        if (logs.isEmpty()) {
+            showInfo("No Logs", "No run logs found in " + logStore.getLogDirectory());
+            return;
+        }
+        
+        List<String> logNames = new ArrayList<>();
+        for (Path log : logs.subList(0, Math.min(logs.size(), 100))) {
+            logNames.add(log.getFileName().toString());
+        }
+        
+        ChoiceDialog<String> dialog = new ChoiceDialog<>(logNames.get(0), logNames);
+        dialog.setTitle("Run Logs");
+        dialog.setHeaderText("Select a log to view");
+        dialog.setContentText("Log:");
+        
+        Optional<String> result = dialog.showAndWait();
+        if (result.isPresent()) {
+            Path logFile = logStore.getLogDirectory().resolve(result.get());
+            try {
+                TextArea textArea = new TextArea(logStore.tail(logFile, 64 * 1024));
+                textArea.setEditable(false);
+                textArea.setWrapText(false);
+                textArea.setPrefSize(800, 500);
+                
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Run Log");
+                alert.setHeaderText(result.get());
+                alert.getDialogPane().setContent(textArea);
+                alert.setResizable(true);
+                alert.showAndWait();
+            } catch (IOException e) {
+                showError("Error reading log", e.getMessage());
+            }
+        }
+    }
+    
     private void showError(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle(title);
@@ -0,0 +1,140 @@
+package com.yunfx.autoshell.database;
+
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.model.ScriptGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Group and member loading must issue a fixed number of statements, however many
+ * groups and scripts there are
+ */
+class DatabaseManagerQueryCountTest {
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate", "executeBatch");
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private DatabaseManager dbManager;
+
+    @BeforeEach
+    void openDatabase() {
+        dbManager = new DatabaseManager(tempDir.resolve("autoshell.db").toString(), this::counting);
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        dbManager.close();
+    }
+
+    @Test
+    void getAllGroupsUsesThreeQueriesRegardlessOfSize() throws SQLException {
+        seed(2, 3);
+        assertEquals(3, countStatements(() -> assertEquals(2, dbManager.getAllGroups().size())));
+
+        seed(20, 10);
+        assertEquals(3, countStatements(() -> assertEquals(22, dbManager.getAllGroups().size())));
+    }
+
+    @Test
+    void getScriptsByGroupUsesTwoQueriesRegardlessOfSize() throws SQLException {
+        List<ScriptGroup> small = seed(1, 2);
+        List<ScriptGroup> large = seed(1, 50);
+
+        assertEquals(2, countStatements(() ->
+            assertEquals(2, dbManager.getScriptsByGroup(small.get(0).getId()).size())));
+        assertEquals(2, countStatements(() ->
+            assertEquals(50, dbManager.getScriptsByGroup(large.get(0).getId()).size())));
+    }
+
+    private interface Reads {
+        void run() throws SQLException;
+    }
+
+    private int countStatements(Reads reads) throws SQLException {
+        statements.set(0);
+        reads.run();
+        return statements.get();
+    }
+
+    /**
+     * Stores groups, each with its own tagged scripts
+     */
+    private List<ScriptGroup> seed(int groupCount, int scriptsPerGroup) throws SQLException {
+        List<ScriptGroup> groups = new ArrayList<>();
+        for (int g = 0; g < groupCount; g++) {
+            ScriptGroup group = new ScriptGroup("group-" + System.nanoTime() + "-" + g);
+            dbManager.saveGroup(group);
+            List<Script> scripts = new ArrayList<>();
+            for (int s = 0; s < scriptsPerGroup; s++) {
+                Script script = new Script("script-" + s, tempDir.resolve(group.getName() + "-" + s + ".sh"));
+                script.setLastModified(LocalDateTime.now());
+                script.setContent("#!/bin/bash\necho " + group.getName() + " " + s + "\n");
+                script.addTag("tag-" + s % 3);
+                scripts.add(script);
+            }
+            dbManager.saveScripts(scripts);
+            for (Script script : scripts) {
+                dbManager.addScriptToGroup(group.getId(), script.getFilePath().toString());
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * Wraps a read connection so every statement it executes is counted
+     */
+    private Connection counting(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof PreparedStatement statement) {
+                return proxy(PreparedStatement.class, statement, countingExecutes(statement));
+            }
+            if (result instanceof Statement statement) {
+                return proxy(Statement.class, statement, countingExecutes(statement));
+            }
+            return result;
+        });
+    }
+
+    private InvocationHandler countingExecutes(Statement statement) {
+        return (proxy, method, args) -> {
+            if (EXECUTE_METHODS.contains(method.getName())) {
+                statements.incrementAndGet();
+            }
+            return invoke(statement, method, args);
+        };
+    }
+
+    private static <T> T proxy(Class<T> type, T target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(DatabaseManagerQueryCountTest.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.yunfx.autoshell.database;
+
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.model.ScriptGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A group or tag filter narrows the search before its limit, so matches in scope
+ * are found however many matches there are outside it
+ */
+class DatabaseSearchTest {
+    @TempDir
+    Path tempDir;
+
+    private DatabaseManager dbManager;
+
+    @BeforeEach
+    void openDatabase() {
+        dbManager = new DatabaseManager(tempDir.resolve("autoshell.db").toString(), UnaryOperator.identity());
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        dbManager.close();
+    }
+
+    @Test
+    void groupFilterAppliesBeforeTheLimit() throws SQLException {
+        // Names rank above bodies, so the outside scripts come first without the filter
+        List<Script> outside = scripts("deploy", 20, null);
+        Script member = scripts("member", 1, null).get(0);
+        member.setContent("#!/bin/bash\necho deploy\n");
+        dbManager.saveScripts(outside);
+        dbManager.saveScripts(List.of(member));
+        ScriptGroup group = new ScriptGroup("members");
+        dbManager.saveGroup(group);
+        dbManager.addScriptToGroup(group.getId(), member.getFilePath().toString());
+
+        List<DatabaseManager.SearchHit> hits = dbManager.searchScripts("deploy", group.getId(), List.of(), 5);
+
+        assertEquals(1, hits.size());
+        assertEquals(member.getFilePath(), hits.get(0).getScript().getFilePath());
+    }
+
+    @Test
+    void tagFilterAppliesBeforeTheLimit() throws SQLException {
+        dbManager.saveScripts(scripts("backup", 20, "daily"));
+        dbManager.saveScripts(scripts("backup-weekly", 3, "Weekly"));
+
+        List<DatabaseManager.SearchHit> hits = dbManager.searchScripts("backup", null, List.of("weekly"), 2);
+
+        assertEquals(2, hits.size());
+        hits.forEach(hit -> assertEquals(List.of("Weekly"), hit.getScript().getTags()));
+    }
+
+    private List<Script> scripts(String name, int count, String tag) {
+        List<Script> scripts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Script script = new Script(name + "-" + i, tempDir.resolve(name + "-" + i + ".sh"));
+            script.setLastModified(LocalDateTime.now());
+            script.setContent("#!/bin/bash\necho " + i + "\n");
+            if (tag != null) {
+                script.addTag(tag);
+            }
+            scripts.add(script);
+        }
+        return scripts;
+    }
+}
@@ -0,0 +1,62 @@
+package com.yunfx.autoshell.database;
+
+import com.yunfx.autoshell.model.Script;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A scan only removes scripts whose files are really gone
+ */
+class ReconcileTest {
+    @TempDir
+    Path tempDir;
+
+    private DatabaseManager dbManager;
+
+    @BeforeEach
+    void openDatabase() {
+        dbManager = new DatabaseManager(tempDir.resolve("autoshell.db").toString(), UnaryOperator.identity());
+    }
+
+    @AfterEach
+    void closeDatabase() throws SQLException {
+        dbManager.close();
+    }
+
+    @Test
+    void keepsScriptsTheScanSkippedButThatStillExist() throws SQLException, IOException {
+        Path root = Files.createDirectories(tempDir.resolve("scripts"));
+        Script kept = script(root.resolve("unreadable.sh"), "echo kept");
+        Script deleted = script(root.resolve("deleted.sh"), "echo deleted");
+        dbManager.syncScripts(root, List.of(kept, deleted));
+        Files.delete(deleted.getFilePath());
+
+        // Neither file is in the scan; only the deleted one is gone from disk
+        DatabaseManager.ReconcileResult result = dbManager.syncScripts(root, List.of());
+
+        assertEquals(1, result.getRemoved());
+        assertEquals(List.of(kept.getFilePath()),
+            dbManager.getAllScripts().stream().map(Script::getFilePath).toList());
+    }
+
+    private static Script script(Path path, String body) throws IOException {
+        String content = "#!/bin/bash\n" + body + "\n";
+        Files.writeString(path, content);
+        Script script = new Script(path.getFileName().toString(), path);
+        script.setLastModified(LocalDateTime.now());
+        script.setContent(content);
+        return script;
+    }
+}
@@ -0,0 +1,203 @@
+package com.yunfx.autoshell.database;
+
+import com.yunfx.autoshell.model.Script;
+import com.yunfx.autoshell.model.ScriptGroup;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Schema migrations on new, current and pre-versioning databases, and the
+ * indexes they create for the hot queries
+ */
+class SchemaMigrationTest {
+    private static final List<Integer> ALL_VERSIONS = List.of(1, 2, 3, 4, 5);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void freshDatabaseGetsEveryMigration() throws SQLException {
+        Path db = tempDir.resolve("fresh.db");
+        new DatabaseManager(db.toString(), connection -> connection).close();
+
+        try (Connection connection = open(db)) {
+            assertEquals(ALL_VERSIONS, versions(connection));
+        }
+    }
+
+    @Test
+    void currentDatabaseIsLeftAlone() throws SQLException {
+        Path db = tempDir.resolve("current.db");
+        DatabaseManager first = new DatabaseManager(db.toString(), connection -> connection);
+        ScriptGroup group = new ScriptGroup("kept");
+        first.saveGroup(group);
+        first.close();
+        List<String> appliedAt;
+        try (Connection connection = open(db)) {
+            appliedAt = strings(connection, "SELECT applied_at FROM schema_version ORDER BY version");
+        }
+
+        DatabaseManager second = new DatabaseManager(db.toString(), connection -> connection);
+        try {
+            assertEquals("kept", second.getAllGroups().get(0).getName());
+        } finally {
+            second.close();
+        }
+        try (Connection connection = open(db)) {
+            assertEquals(ALL_VERSIONS, versions(connection));
+            assertEquals(appliedAt, strings(connection, "SELECT applied_at FROM schema_version ORDER BY version"));
+        }
+    }
+
+    @Test
+    void preVersioningDatabaseIsUpgraded() throws SQLException {
+        Path db = tempDir.resolve("legacy.db");
+        String path = tempDir.resolve("legacy.sh").toString();
+        try (Connection connection = open(db);
+             Statement stmt = connection.createStatement()) {
+            // The schema as it was before versioning: inline bodies, no types or positions
+            stmt.execute("CREATE TABLE script_groups (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL UNIQUE, description TEXT, created_at TEXT NOT NULL)");
+            stmt.execute("CREATE TABLE scripts (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, description TEXT, file_path TEXT NOT NULL UNIQUE, last_modified TEXT, executable BOOLEAN DEFAULT 1, content TEXT)");
+            stmt.execute("CREATE TABLE group_scripts (group_id INTEGER, script_id INTEGER, PRIMARY KEY (group_id, script_id))");
+            stmt.execute("CREATE TABLE script_tags (script_id INTEGER, tag TEXT, PRIMARY KEY (script_id, tag))");
+            stmt.execute("CREATE TABLE script_runs (id INTEGER PRIMARY KEY AUTOINCREMENT, script_path TEXT NOT NULL, started_at TEXT NOT NULL, duration_ms INTEGER NOT NULL, exit_code INTEGER NOT NULL, success BOOLEAN NOT NULL, input_hash TEXT)");
+            stmt.execute("INSERT INTO script_groups (name, created_at) VALUES ('legacy', '" + LocalDateTime.now() + "')");
+            stmt.execute("INSERT INTO scripts (name, file_path, last_modified, content) VALUES ('legacy.sh', '" + path + "', '" + LocalDateTime.now() + "', '#!/bin/bash\necho zanzibar\n')");
+            stmt.execute("INSERT INTO group_scripts (group_id, script_id) VALUES (1, 1)");
+            stmt.execute("INSERT INTO script_tags (script_id, tag) VALUES (1, 'old')");
+        }
+
+        DatabaseManager dbManager = new DatabaseManager(db.toString(), connection -> connection);
+        try {
+            ScriptGroup group = dbManager.getAllGroups().get(0);
+            assertEquals(ScriptGroup.Type.STANDARD, group.getType());
+            Script script = group.getScripts().get(0);
+            assertEquals("#!/bin/bash\necho zanzibar\n", script.getContent());
+            assertEquals(List.of("old"), script.getTags());
+            assertEquals(path, dbManager.searchScripts("zanzibar", 10).get(0).getScript().getFilePath().toString());
+        } finally {
+            dbManager.close();
+        }
+        try (Connection connection = open(db)) {
+            assertEquals(ALL_VERSIONS, versions(connection));
+            assertEquals(List.of(), strings(connection, "SELECT content FROM scripts WHERE content IS NOT NULL"));
+        }
+    }
+
+    @Test
+    void failedMigrationLeavesNoTrace() throws SQLException {
+        try (Connection connection = open(tempDir.resolve("failed.db"))) {
+            SchemaMigrator migrator = new SchemaMigrator()
+                .add(1, "table", c -> execute(c, "CREATE TABLE a (x)"))
+                .add(2, "broken", c -> {
+                    execute(c, "CREATE TABLE b (x)");
+                    execute(c, "INSERT INTO missing VALUES (1)");
+                });
+            assertThrows(SQLException.class, () -> migrator.migrate(connection));
+            assertEquals(List.of(1), versions(connection));
+            assertEquals(List.of("a"), strings(connection, "SELECT name FROM sqlite_master WHERE name IN ('a', 'b')"));
+        }
+    }
+
+    @Test
+    void versionsMustIncrease() {
+        SchemaMigrator migrator = new SchemaMigrator().add(2, "second", c -> { });
+        assertThrows(IllegalArgumentException.class, () -> migrator.add(2, "again", c -> { }));
+    }
+
+    @Test
+    void hotQueriesUseIndexes() throws SQLException {
+        Path db = tempDir.resolve("plans.db");
+        new DatabaseManager(db.toString(), connection -> connection).close();
+
+        try (Connection connection = open(db)) {
+            // Members of a group in stage order
+            String members = plan(connection, """
+                SELECT s.id, s.name, s.description, s.file_path, s.content_hash FROM scripts s
+                JOIN group_scripts gs ON s.id = gs.script_id
+                WHERE gs.group_id = ?
+                ORDER BY gs.position, s.name
+            """);
+            assertTrue(members.contains("SEARCH gs USING COVERING INDEX idx_group_scripts_position (group_id=?)"), members);
+
+            // All scripts by name: read in index order instead of sorted
+            String byName = plan(connection, "SELECT s.id, s.name, s.description, s.file_path, s.content_hash FROM scripts s ORDER BY s.name");
+            assertTrue(byName.contains("SCAN s USING INDEX idx_scripts_name"), byName);
+            assertFalse(byName.contains("TEMP B-TREE"), byName);
+
+            // Lookups done by the cascades when a script or group is deleted
+            String scriptCascade = plan(connection, "SELECT group_id FROM group_scripts WHERE script_id = ?");
+            assertTrue(scriptCascade.contains("SEARCH group_scripts USING COVERING INDEX idx_group_scripts_script (script_id=?)"), scriptCascade);
+            String groupCascade = plan(connection, "SELECT id FROM group_runs WHERE group_id = ?");
+            assertTrue(groupCascade.contains("SEARCH group_runs USING COVERING INDEX idx_group_runs_group (group_id=?)"), groupCascade);
+
+            // Last successful run of a script
+            String lastRun = plan(connection, """
+                SELECT input_hash FROM script_runs
+                WHERE script_path = ? AND success = 1
+                ORDER BY id DESC LIMIT 1
+            """);
+            assertTrue(lastRun.contains("SEARCH script_runs USING INDEX idx_script_runs_path (script_path=? AND success=?)"), lastRun);
+            assertFalse(lastRun.contains("TEMP B-TREE"), lastRun);
+        }
+    }
+
+    private static Connection open(Path db) throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + db);
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static List<Integer> versions(Connection connection) throws SQLException {
+        List<Integer> versions = new ArrayList<>();
+        for (String version : strings(connection, "SELECT version FROM schema_version ORDER BY version")) {
+            versions.add(Integer.parseInt(version));
+        }
+        return versions;
+    }
+
+    private static List<String> strings(Connection connection, String sql) throws SQLException {
+        List<String> values = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                values.add(rs.getString(1));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return The query plan's steps, one per line
+     */
+    private static String plan(Connection connection, String sql) throws SQLException {
+        List<String> steps = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while (rs.next()) {
+                steps.add(rs.getString("detail"));
+            }
+        }
+        return String.join("\n", steps);
+    }
+}